@@ -0,0 +1,104 @@
+// Copyright (c) FIRST and other WPILib contributors.
+// Open Source Software; you can modify and/or share it under the terms of
+// the WPILib BSD license file in the root directory of this project.
+
+package frc.robot.benchmarks;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.EnumSet;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import edu.wpi.first.hal.HAL;
+import edu.wpi.first.networktables.NetworkTable;
+import edu.wpi.first.networktables.NetworkTableInstance;
+import frc.robot.utils.LimelightHelpers;
+import frc.robot.utils.LimelightResultsParser;
+
+
+/**
+ * Benchmarks the {@link LimelightHelpers} read paths against values published locally to NetworkTables, as a Limelight
+ * tracking two AprilTags would publish them.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@State(Scope.Benchmark)
+public class LimelightBenchmark {
+  static final String LIMELIGHT = "limelight";
+
+  /** botpose_orb_wpiblue for two tags: pose, latency, tag count/span/dist/area, then 7 values per tag. */
+  static final double[] BOTPOSE_MEGATAG2 = {
+    2.1, 4.05, 0, 0, 0, 1.2, 29.7, 2, 0.42, 1.63, 0.85,
+    18, -3.2, 1.9, 0.011, 1.55, 1.96, 0.05,
+    17, 12.8, 2.1, 0.007, 1.71, 2.12, 0.08
+  };
+
+  String json;
+  LimelightResultsParser parser;
+  final LimelightHelpers.MutablePoseEstimate estimate = new LimelightHelpers.MutablePoseEstimate(8);
+
+
+  @Setup
+  public void setup() throws IOException {
+    HAL.initialize(500, 0);
+
+    try (InputStream in = LimelightBenchmark.class.getResourceAsStream("/limelight_results.json")) {
+      json = new String(in.readAllBytes(), StandardCharsets.UTF_8);
+    }
+
+    NetworkTable table = NetworkTableInstance.getDefault().getTable(LIMELIGHT);
+    table.getEntry("json").setString(json);
+    table.getEntry("botpose_orb_wpiblue").setDoubleArray(BOTPOSE_MEGATAG2);
+    table.getEntry("tx").setDouble(-3.2);
+
+    parser = new LimelightResultsParser(LIMELIGHT, EnumSet.of(LimelightResultsParser.Section.RETRO,
+      LimelightResultsParser.Section.CLASSIFIER, LimelightResultsParser.Section.BARCODE));
+  }
+
+
+  @Benchmark
+  public LimelightHelpers.LimelightResults getLatestResults() {
+    return LimelightHelpers.getLatestResults(LIMELIGHT);
+  }
+
+
+  @Benchmark
+  public LimelightResultsParser.Results parseLatestResults() {
+    parser.parse(json);
+    return parser.getResults();
+  }
+
+
+  @Benchmark
+  public boolean updateLatestResultsUnchanged() {
+    return parser.update();
+  }
+
+
+  @Benchmark
+  public LimelightHelpers.PoseEstimate getBotPoseEstimateMegaTag2() {
+    return LimelightHelpers.getBotPoseEstimate_wpiBlue_MegaTag2(LIMELIGHT);
+  }
+
+
+  @Benchmark
+  public LimelightHelpers.MutablePoseEstimate getBotPoseEstimateMegaTag2InPlace() {
+    LimelightHelpers.getBotPoseEstimate_wpiBlue_MegaTag2(LIMELIGHT, estimate);
+    return estimate;
+  }
+
+
+  @Benchmark
+  public double getTX() {
+    return LimelightHelpers.getTX(LIMELIGHT);
+  }
+}
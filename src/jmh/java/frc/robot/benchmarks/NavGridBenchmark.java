@@ -0,0 +1,77 @@
+// Copyright (c) FIRST and other WPILib contributors.
+// Open Source Software; you can modify and/or share it under the terms of
+// the WPILib BSD license file in the root directory of this project.
+
+package frc.robot.benchmarks;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import edu.wpi.first.hal.HAL;
+import edu.wpi.first.wpilibj.Filesystem;
+import frc.robot.utils.NavGrid;
+
+
+/**
+ * Benchmarks loading the deployed navgrid with {@link NavGrid}, from JSON and from its binary cache, and clearance
+ * lookups on it.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@State(Scope.Benchmark)
+public class NavGridBenchmark {
+  File json;
+  File cache;
+  byte[] jsonBytes;
+  NavGrid grid;
+  double x = 0;
+
+
+  @Setup
+  public void setup() throws IOException {
+    HAL.initialize(500, 0);
+
+    json = new File(Filesystem.getDeployDirectory(), "pathplanner/navgrid.json");
+    jsonBytes = Files.readAllBytes(json.toPath());
+    cache = File.createTempFile("navgrid", ".bin");
+    grid = NavGrid.load(json, cache);
+  }
+
+
+  @TearDown
+  public void tearDown() {
+    cache.delete();
+  }
+
+
+  @Benchmark
+  public NavGrid parseJson() throws IOException {
+    return NavGrid.parse(jsonBytes);
+  }
+
+
+  @Benchmark
+  public NavGrid loadCached() throws IOException {
+    return NavGrid.load(json, cache);
+  }
+
+
+  @Benchmark
+  public double getClearance() {
+    // Sweep across the field so lookups don't all hit the same cell
+    x += 0.07;
+    if (x > grid.getFieldLength()) x = 0;
+    return grid.getClearance(x, 4.0);
+  }
+}
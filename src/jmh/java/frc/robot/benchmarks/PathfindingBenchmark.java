@@ -0,0 +1,98 @@
+// Copyright (c) FIRST and other WPILib contributors.
+// Open Source Software; you can modify and/or share it under the terms of
+// the WPILib BSD license file in the root directory of this project.
+
+package frc.robot.benchmarks;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import edu.wpi.first.hal.HAL;
+import edu.wpi.first.wpilibj.Filesystem;
+import frc.robot.utils.DStarLite;
+import frc.robot.utils.NavGrid;
+
+
+/**
+ * Benchmarks replanning across the deployed navgrid with {@link DStarLite} while a robot-sized obstacle moves across
+ * mid-field, repairing the previous search versus planning from scratch. Both return the number of expanded cells.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@State(Scope.Benchmark)
+public class PathfindingBenchmark {
+  NavGrid grid;
+  DStarLite incremental;
+  DStarLite fromScratch;
+  long[] obstacles;
+  int goalRow, goalColumn;
+  double obstacleY = 1;
+  double obstacleStep = 0.1;
+
+
+  @Setup
+  public void setup() throws IOException {
+    HAL.initialize(500, 0);
+
+    grid = NavGrid.load(new File(Filesystem.getDeployDirectory(), "pathplanner/navgrid.json"), null);
+    obstacles = new long[(grid.getCellCount() + 63) >>> 6];
+
+    // From the blue side of the field to the red side
+    int startRow = grid.rowOf(4), startColumn = freeColumn(grid.rowOf(4), grid.columnOf(2));
+    goalRow = grid.rowOf(4);
+    goalColumn = freeColumn(goalRow, grid.columnOf(15));
+
+    incremental = new DStarLite(grid);
+    fromScratch = new DStarLite(grid);
+    for (DStarLite planner : new DStarLite[] {incremental, fromScratch}) {
+      planner.setStart(startRow, startColumn);
+      planner.setGoal(goalRow, goalColumn);
+      planner.plan();
+    }
+  }
+
+
+  @Benchmark
+  public int replanIncremental() {
+    incremental.setDynamicObstacles(moveObstacle());
+    incremental.plan();
+    return incremental.getExpandedNodes();
+  }
+
+
+  @Benchmark
+  public int replanFromScratch() {
+    fromScratch.setDynamicObstacles(moveObstacle());
+    fromScratch.setGoal(goalRow, goalColumn);
+    fromScratch.plan();
+    return fromScratch.getExpandedNodes();
+  }
+
+
+  /** Sweeps the obstacle up and down mid-field and returns its cells. */
+  private long[] moveObstacle() {
+    obstacleY += obstacleStep;
+    if (obstacleY < 1 || obstacleY > grid.getFieldWidth() - 1) obstacleStep = -obstacleStep;
+
+    double x = grid.getFieldLength() / 2;
+    Arrays.fill(obstacles, 0);
+    grid.fillRectangle(obstacles, x - 0.75, obstacleY - 0.75, x + 0.75, obstacleY + 0.75);
+    return obstacles;
+  }
+
+
+  private int freeColumn(int row, int column) {
+    while (grid.isObstacle(row, column) && column < grid.getColumns() - 1) column++;
+    return column;
+  }
+}
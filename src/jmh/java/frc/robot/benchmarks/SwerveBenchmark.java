@@ -0,0 +1,64 @@
+// Copyright (c) FIRST and other WPILib contributors.
+// Open Source Software; you can modify and/or share it under the terms of
+// the WPILib BSD license file in the root directory of this project.
+
+package frc.robot.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import edu.wpi.first.hal.HAL;
+import frc.robot.commands.TeleopDriveCommand;
+import frc.robot.subsystems.SwerveSubsystem;
+import frc.robot.subsystems.vision.VisionSubsystem;
+
+
+/**
+ * Benchmarks the drive and odometry paths of {@link SwerveSubsystem} and {@link TeleopDriveCommand}, using the
+ * simulated swerve drive YAGSL builds from the deploy directory.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@State(Scope.Benchmark)
+public class SwerveBenchmark {
+  private SwerveSubsystem swerve;
+  private TeleopDriveCommand teleopDrive;
+
+
+  @Setup
+  public void setup() {
+    HAL.initialize(500, 0);
+
+    swerve = new SwerveSubsystem();
+    VisionSubsystem vision = new VisionSubsystem();
+
+    // Half stick forward, a little strafe and turn, field relative, no vision aim
+    teleopDrive = new TeleopDriveCommand(swerve, vision, () -> -0.5, () -> 0.2, () -> 0.3, () -> true, () -> false);
+    teleopDrive.initialize();
+  }
+
+
+  @Benchmark
+  public void drive() {
+    swerve.drive(1.0, 0.5, 0.3, true, false);
+  }
+
+
+  @Benchmark
+  public void teleopDriveExecute() {
+    teleopDrive.execute();
+  }
+
+
+  @Benchmark
+  public void updateOdometry() {
+    swerve.updateOdometry();
+  }
+}
@@ -0,0 +1,77 @@
+// Copyright (c) FIRST and other WPILib contributors.
+// Open Source Software; you can modify and/or share it under the terms of
+// the WPILib BSD license file in the root directory of this project.
+
+package frc.robot.benchmarks;
+
+import static frc.robot.Constants.VisionConstants.aprilTagFieldLayout;
+
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.photonvision.simulation.PhotonCameraSim;
+import org.photonvision.simulation.SimCameraProperties;
+import org.photonvision.simulation.VisionSystemSim;
+import org.photonvision.targeting.PhotonPipelineResult;
+
+import edu.wpi.first.hal.HAL;
+import edu.wpi.first.math.geometry.Pose2d;
+import edu.wpi.first.math.geometry.Rotation2d;
+import frc.robot.Constants.VisionConstants.VisionCameraInfo;
+import frc.robot.subsystems.vision.PVCamera;
+import frc.robot.subsystems.vision.VisionPoseEstimate;
+
+
+/**
+ * Benchmarks {@link PVCamera#estimate(PhotonPipelineResult)}, the work the camera worker does per frame, on a frame
+ * produced by PhotonVision's simulated camera with the robot on the blue side of the reef looking at tags 17 and 18.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@State(Scope.Benchmark)
+public class VisionBenchmark {
+  private final Pose2d robotPose = new Pose2d(2.0, 4.03, Rotation2d.kZero);
+
+  private PVCamera camera;
+  private PhotonPipelineResult frame;
+
+
+  @Setup
+  public void setup() throws InterruptedException {
+    HAL.initialize(500, 0);
+
+    VisionCameraInfo info = VisionCameraInfo.PRIMARY;
+    camera = new PVCamera(info.camName, info.botToCam);
+
+    VisionSystemSim visionSim = new VisionSystemSim("benchmark");
+    visionSim.addAprilTags(aprilTagFieldLayout);
+
+    PhotonCameraSim cameraSim = new PhotonCameraSim(camera.camera, SimCameraProperties.PERFECT_90DEG());
+    cameraSim.enableRawStream(false);
+    cameraSim.enableProcessedStream(false);
+    visionSim.addCamera(cameraSim, info.botToCam);
+
+    // Let the camera confirm its pipeline, then publish one frame and wait for the camera worker to pick it up, after
+    // which the worker stays idle
+    camera.periodic();
+    visionSim.update(robotPose);
+    while (frame == null) {
+      Thread.sleep(20);
+      camera.periodic();
+      frame = camera.getLatestResult().orElse(null);
+    }
+  }
+
+
+  @Benchmark
+  public Optional<VisionPoseEstimate> estimate() {
+    return camera.estimate(frame);
+  }
+}
@@ -9,6 +9,7 @@ import edu.wpi.first.math.geometry.Translation3d;
 import org.photonvision.PhotonPoseEstimator.PoseStrategy;
 
 import com.pathplanner.lib.config.PIDConstants;
+import com.pathplanner.lib.path.PathConstraints;
 
 import edu.wpi.first.apriltag.AprilTagFieldLayout;
 import edu.wpi.first.apriltag.AprilTagFields;
@@ -36,6 +37,15 @@ public final class Constants {
 
     /** High verbosity allows to see more data in ShuffleBoard */
     public static final TelemetryVerbosity TELEMETRY_VERBOSITY = TelemetryVerbosity.HIGH;
+
+    /** How often the odometry thread samples module positions and gyro yaw, in Hz. */
+    public static final double ODOMETRY_FREQUENCY = 250;
+
+    /** Number of odometry samples buffered between main loop drains (~2 loops worth at 250 Hz). */
+    public static final int ODOMETRY_BUFFER_CAPACITY = 12;
+
+    /** Number of fused poses kept for latency compensation (~2 s at 250 Hz). */
+    public static final int POSE_HISTORY_CAPACITY = 512;
   }
 
 
@@ -51,26 +61,84 @@ public final class Constants {
     public static final Matrix<N3, N1> kSingleTagStdDevs = VecBuilder.fill(4, 4, 8);     // TODO tune
     public static final Matrix<N3, N1> kMultiTagStdDevs = VecBuilder.fill(0.5, 0.5, 1);  // TODO tune
 
+    // Pose estimates each camera worker can queue between main loop drains
+    public static final int VISION_QUEUE_CAPACITY = 16;
+    public static final int LIMELIGHT_MAX_FIDUCIALS = 16;  // raw fiducials decoded per Limelight frame
+
+    // PhotonVision pipeline switching
+    public static final double PIPELINE_RESEND_PERIOD = 1;      // in s, resend an unconfirmed pipeline request this often
+    public static final int CHASE_TAG_PIPELINE_PRIORITY = 10;
+    public static final double CHASE_TAG_GOAL_FILTER_GAIN = 0.3;  // weight of each new frame in the ChaseTagCommand goal
+
+    // Limelight 3 field of view, used to predict which tags each Limelight can see
+    public static final double LIMELIGHT_HORIZONTAL_FOV = Units.degreesToRadians(62.5);
+    public static final double LIMELIGHT_VERTICAL_FOV = Units.degreesToRadians(48.9);
+    public static final double APRILTAG_SIZE = Units.inchesToMeters(6.5);
+    public static final double TAG_PREDICTION_MAX_DISTANCE = 6;   // in m, tags further away are not expected to be detected
+    public static final double TAG_PREDICTION_FOV_MARGIN = 0.15;  // in normalized image units, covers pose error at the frame edges
+    public static final double TAG_CROP_MARGIN = 0.15;            // in normalized image units, padding around predicted tags
+    public static final double TAG_CROP_STEP = 0.05;              // crop windows are rounded outwards to this grid to avoid resending
+    public static final double TAG_PREDICTION_TRUST_TIMEOUT = 1;  // in s, the camera is opened up fully without an accepted estimate for this long
+
+    // Distance-adaptive Limelight detector downscaling, trades resolution for frame rate when tags appear large
+    public static final float[] LIMELIGHT_DOWNSCALE_FACTORS = {1, 1.5f, 2, 3, 4};  // supported by the Limelight
+    public static final double LIMELIGHT_IMAGE_WIDTH = 1280;      // in px, of the AprilTag pipeline
+    public static final double DOWNSCALE_MIN_TAG_PIXELS = 40;     // TODO tune, tag width in px needed after downscaling
+    public static final double DOWNSCALE_SPEED_PENALTY = 0.25;    // extra fraction of tag width needed per m/s, for motion blur
+    public static final double DOWNSCALE_HYSTERESIS = 1.2;        // margin needed before downscaling further
+
+    // Outlier gating of vision estimates against odometry (squared Mahalanobis distance, 3 DOF chi-squared)
+    public static final double VISION_GATE_ACCEPT_CHI2 = 7.81;   // 95%, accepted as is
+    public static final double VISION_GATE_REJECT_CHI2 = 16.27;  // 99.9%, rejected beyond this, down-weighted between
+    public static final Matrix<N3, N1> ODOMETRY_STD_DEVS = VecBuilder.fill(0.1, 0.1, 0.1);            // YAGSL's default state std devs
+    public static final Matrix<N3, N1> ODOMETRY_DRIFT_PER_SECOND = VecBuilder.fill(0.1, 0.1, 0.05);   // TODO tune, m/s and rad/s
+    public static final double VISION_GATE_MAX_DRIFT_TIME = 10; // in s, caps how wide the gate opens without vision
+    public static final int VISION_GATE_MAX_CONSECUTIVE_REJECTIONS = 25;  // the pose is assumed lost after this many in a row
+
     public static final double VISION_YAW_DEADBAND = .5;  // TODO tune
     public static final double AMBIGUITY_DEADBAND = 0.2;
 
     public static final double VISION_TURN_kP = 0.005;    // TODO tune
     public static final double VISION_FORWARD_kP = 1;     // TODO tune
 
-    // Constraints for profiled movement of robot whilst controlled by vision
-    public static final TrapezoidProfile.Constraints X_CONSTRAINTS = new TrapezoidProfile.Constraints(3, 2);
-    public static final TrapezoidProfile.Constraints Y_CONSTRAINTS = new TrapezoidProfile.Constraints(3, 2);
+    // Constraints for profiled movement of robot whilst controlled by vision, translation is along the line to the goal
+    public static final TrapezoidProfile.Constraints TRANSLATION_CONSTRAINTS = new TrapezoidProfile.Constraints(SwerveConstants.MAX_SPEED, 2);
     public static final TrapezoidProfile.Constraints OMEGA_CONSTRAINTS = new TrapezoidProfile.Constraints(8, 8);
 
-    // PID Values for ProfiledPIDControllers used in ChaseTagCommand
+    // PID Values for the setpoint tracking PIDControllers used in DriveToPoseCommand
     public static final PIDConstants X_PID_CONSTANTS = new PIDConstants(0.8, 0, 0.02);       // TODO tune
     public static final PIDConstants Y_PID_CONSTANTS = new PIDConstants(0.4, 0, 0.07);       // TODO tune
     public static final PIDConstants OMEGA_PID_CONSTANTS = new PIDConstants(1, 0, 0);        // TODO tune
 
-    // ProfiledPIDControllers tolerance values
+    // PIDControllers tolerance values
     public static final double X_TOLERANCE = 0.2; // in m
     public static final double Y_TOLERANCE = 0.2; // in m
     public static final double OMEGA_TOLERANCE = 3; // in deg
+
+    // Fine alignment onto the target at the end of DriveToPoseCommand
+    public static final double FINE_ALIGNMENT_DISTANCE = 0.3;                            // in m, handoff once the robot is this close
+    public static final double FINE_ALIGNMENT_ANGLE = Units.degreesToRadians(10);        // in rad, and within this angle
+    public static final double FINE_ALIGNMENT_MAX_SPEED = 0.5;                           // in m/s
+    public static final double FINE_ALIGNMENT_MAX_ANGULAR_SPEED = 1;                     // in rad/s
+    public static final PIDConstants FINE_TRANSLATION_PID_CONSTANTS = new PIDConstants(2, 0, 0);  // TODO tune
+    public static final PIDConstants FINE_OMEGA_PID_CONSTANTS = new PIDConstants(2, 0, 0);        // TODO tune
+
+    // Constraints for paths planned around obstacles on the navgrid by PathfindToTagCommand
+    public static final PathConstraints PATHFINDING_CONSTRAINTS = new PathConstraints(
+      TRANSLATION_CONSTRAINTS.maxVelocity,
+      TRANSLATION_CONSTRAINTS.maxAcceleration,
+      OMEGA_CONSTRAINTS.maxVelocity,
+      OMEGA_CONSTRAINTS.maxAcceleration
+    );
+
+    // Obstacles from object detection (e.g. other robots) that the pathfinder plans around
+    public static final int MAX_DYNAMIC_OBSTACLES = 16;
+    public static final double DYNAMIC_OBSTACLE_SIZE = 1.5;              // in m, side of the square blocked around each, with room for this robot
+    public static final double DYNAMIC_OBSTACLE_TIMEOUT = 1;             // in s, forgotten when not seen for this long
+    public static final double DYNAMIC_OBSTACLE_MERGE_DISTANCE = 0.5;    // in m, detections this close are the same object
+    public static final double DYNAMIC_OBSTACLE_CELL_SIZE = 0.3;         // in m, obstacles are resent when one moves to another cell, the navgrid's node size
+    public static final double DETECTION_TARGET_HEIGHT = 0.1;            // in m, height of the detected point above the floor
+    public static final double DETECTION_MAX_DISTANCE = 5;               // in m, farther detections are too inaccurate
     
     /**
      * Enum representing different vision cameras.
@@ -78,6 +146,7 @@ public final class Constants {
     public static enum VisionCameraInfo {
       PRIMARY(
         "cds_cam",
+        VisionBackend.PHOTONVISION,
         new Transform3d(
           new Translation3d(0.406, 0, 0.1524), // X is forward in m, z is up in m
           new Rotation3d(0, 0, 0)  // facing forward
@@ -85,13 +154,25 @@ public final class Constants {
       );
 
       public final String camName;
+      public final VisionBackend backend;
       public final Transform3d botToCam;
 
-      VisionCameraInfo(String camName, Transform3d botToCam) {
+      VisionCameraInfo(String camName, VisionBackend backend, Transform3d botToCam) {
         this.camName = camName;
+        this.backend = backend;
         this.botToCam = botToCam;
       }
     }
+
+
+    /**
+     * Enum representing the hardware and pose estimation mode behind a camera.
+     */
+    public enum VisionBackend {
+      PHOTONVISION,
+      LIMELIGHT_MEGATAG1,
+      LIMELIGHT_MEGATAG2
+    }
   
 
     /**
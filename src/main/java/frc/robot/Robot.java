@@ -4,22 +4,35 @@
 
 package frc.robot;
 
+import com.pathplanner.lib.commands.PathfindingCommand;
+
 import edu.wpi.first.wpilibj.TimedRobot;
 import edu.wpi.first.wpilibj2.command.Command;
 import edu.wpi.first.wpilibj2.command.CommandScheduler;
+import frc.robot.utils.LoopProfiler;
 
 public class Robot extends TimedRobot {
   private Command m_autonomousCommand;
 
   private final RobotContainer m_robotContainer;
 
+  private final LoopProfiler.Section schedulerSection = LoopProfiler.section("CommandScheduler.run()");
+
   public Robot() {
     m_robotContainer = new RobotContainer();
+
+    // Plans and follows a throwaway path while disabled, so loading the navgrid and JIT compiling the pathfinder
+    // don't delay the first real pathfinding request
+    PathfindingCommand.warmupCommand().schedule();
   }
 
   @Override
   public void robotPeriodic() {
+    schedulerSection.start();
     CommandScheduler.getInstance().run();
+    schedulerSection.stop();
+
+    LoopProfiler.publish();
   }
 
   @Override
@@ -4,6 +4,9 @@
 
 package frc.robot;
 
+import java.util.HashMap;
+import java.util.Map;
+
 import com.pathplanner.lib.auto.AutoBuilder;
 
 import edu.wpi.first.math.geometry.Translation2d;
@@ -17,16 +20,24 @@ import frc.robot.Constants.DriverJoystickConstants;
 import frc.robot.Constants.OperatorBoardConstants;
 import frc.robot.Constants.VisionConstants.PoseRelToAprilTag;
 import frc.robot.commands.ChaseTagCommand;
+import frc.robot.commands.DriveToPoseCommand;
+import frc.robot.commands.PathfindToTagCommand;
 import frc.robot.commands.TeleopDriveCommand;
 import frc.robot.subsystems.OperatorBoard;
 import frc.robot.subsystems.PoseEstimatorSubsystem;
 import frc.robot.subsystems.SwerveSubsystem;
+import frc.robot.subsystems.SwervePIDTuner;
 import frc.robot.subsystems.vision.VisionSubsystem;
+import frc.robot.utils.LoopProfiler;
 
 public class RobotContainer {
   // Swerve subsystems
   private final SwerveSubsystem m_Swerve;
 
+  // Live tuning of the swerve module PIDF gains
+  @SuppressWarnings("unused")
+  private final SwervePIDTuner m_SwerveTuner;
+
   // Vision subsystem
   private final VisionSubsystem m_Vision;
 
@@ -38,11 +49,12 @@ public class RobotContainer {
   private final CommandXboxController m_DriverController;
 
   // Custom operator board
-  @SuppressWarnings("unused")
   private final OperatorBoard m_OperatorBoard;
 
   // Autonomous command chooser
   private final SendableChooser<Command> autoChooser;
+  // Profiled wrapper of each auto, made once since a command can only be composed once
+  private final Map<Command, Command> profiledAutos = new HashMap<>();
 
   // Whether the robot should drive in field relative mode or robot relative mode
   private boolean fieldOriented = true;
@@ -51,13 +63,14 @@ public class RobotContainer {
   public RobotContainer() {
     // Initialize
     m_Swerve = new SwerveSubsystem();
+    m_SwerveTuner = new SwervePIDTuner(m_Swerve);
     m_Vision = new VisionSubsystem();
     m_PoseEstimator = new PoseEstimatorSubsystem(m_Swerve, m_Vision);
     m_DriverController = new CommandXboxController(DriverJoystickConstants.kDriverControllerPort);
     m_OperatorBoard = new OperatorBoard(OperatorBoardConstants.kOperatorBoardPort);
 
     // Set default driving command
-    m_Swerve.setDefaultCommand(
+    m_Swerve.setDefaultCommand(LoopProfiler.profile(
       new TeleopDriveCommand(
         m_Swerve,
         m_Vision,
@@ -67,7 +80,7 @@ public class RobotContainer {
         () -> fieldOriented,
         m_DriverController.getHID()::getBButton
       )
-    );
+    ));
 
     // Register Named Commands for PP autons
     // ex. NamedCommands.registerCommand("autoBalance", swerve.autoBalanceCommand());
@@ -81,8 +94,10 @@ public class RobotContainer {
 
   private void configureBindings() {
     m_DriverController.x().onTrue((Commands.runOnce(m_Swerve::zeroGyro)));
-    m_DriverController.y().whileTrue(new ChaseTagCommand(m_Vision, m_Swerve, m_Swerve::getPose, PoseRelToAprilTag.SAMPLE_POSE));
+    m_DriverController.y().whileTrue(LoopProfiler.profile(new ChaseTagCommand(m_Vision, m_Swerve, m_Swerve::getPose, PoseRelToAprilTag.SAMPLE_POSE)));
     m_DriverController.a().onTrue(Commands.runOnce(() -> fieldOriented = !fieldOriented));
+    m_DriverController.leftBumper().whileTrue(LoopProfiler.profile(new PathfindToTagCommand(m_Swerve, m_Swerve::getPose, PoseRelToAprilTag.SAMPLE_POSE)));
+    m_DriverController.rightBumper().whileTrue(LoopProfiler.profile(new DriveToPoseCommand(m_Swerve, m_Swerve::getPose, m_OperatorBoard::getTargetPose)));
     
     // check if inb test mode
     if(DriverStation.isTest()) {
@@ -101,6 +116,8 @@ public class RobotContainer {
   }
 
   public Command getAutonomousCommand() {
-    return autoChooser.getSelected();
+    Command selected = autoChooser.getSelected();
+    if (selected == null) return null;
+    return profiledAutos.computeIfAbsent(selected, LoopProfiler::profile);
   }
 }
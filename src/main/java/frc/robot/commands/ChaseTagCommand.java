@@ -6,74 +6,52 @@
 package frc.robot.commands;
 
 
-import static frc.robot.Constants.VisionConstants.OMEGA_CONSTRAINTS;
-import static frc.robot.Constants.VisionConstants.OMEGA_PID_CONSTANTS;
-import static frc.robot.Constants.VisionConstants.OMEGA_TOLERANCE;
-import static frc.robot.Constants.VisionConstants.X_CONSTRAINTS;
-import static frc.robot.Constants.VisionConstants.X_PID_CONSTANTS;
-import static frc.robot.Constants.VisionConstants.X_TOLERANCE;
-import static frc.robot.Constants.VisionConstants.Y_CONSTRAINTS;
-import static frc.robot.Constants.VisionConstants.Y_PID_CONSTANTS;
-import static frc.robot.Constants.VisionConstants.Y_TOLERANCE;
+import static frc.robot.Constants.VisionConstants.AMBIGUITY_DEADBAND;
+import static frc.robot.Constants.VisionConstants.CHASE_TAG_GOAL_FILTER_GAIN;
+import static frc.robot.Constants.VisionConstants.CHASE_TAG_PIPELINE_PRIORITY;
 
 import java.util.function.Supplier;
 
 import org.photonvision.targeting.PhotonTrackedTarget;
 
-import edu.wpi.first.math.controller.ProfiledPIDController;
+import edu.wpi.first.math.MathUtil;
 import edu.wpi.first.math.geometry.Pose2d;
 import edu.wpi.first.math.geometry.Pose3d;
-import edu.wpi.first.networktables.GenericEntry;
-import edu.wpi.first.wpilibj.shuffleboard.Shuffleboard;
-import edu.wpi.first.wpilibj.shuffleboard.ShuffleboardTab;
+import edu.wpi.first.math.geometry.Rotation2d;
 import edu.wpi.first.wpilibj2.command.Command;
 import frc.robot.Constants.VisionConstants.PoseRelToAprilTag;
+import frc.robot.Constants.VisionConstants.VisionPipelineInfo;
 import frc.robot.subsystems.SwerveSubsystem;
+import frc.robot.subsystems.vision.AprilTagTable;
 import frc.robot.subsystems.vision.VisionSubsystem;
 
 /** A command that chases a target using the swerve drive.
- * This command uses the photon camera to track a target and then uses a PID controller to drive the robot to the target.
- * The {@link ProfiledPIDController}s are used to control the x, y, and omega (rotation) of the robot.
- * The command ends  the robot reaches the target pose.
+ * This command drives the robot to a pose relative to an AprilTag. The goal is taken from the field layout when the tag
+ * is in it, otherwise it is located with the photon camera, compensating for the frame's latency.
+ * Driving to the goal is done by a {@link DriveToPoseCommand}.
+ * The command ends when the robot reaches the target pose. The time it took is published as
+ * "ChaseTagCommand/alignment time".
  */
 public class ChaseTagCommand extends Command {
   private final VisionSubsystem vision;
   private final SwerveSubsystem swerve;
-  private final Supplier<Pose2d> poseSupplier;
   private final PoseRelToAprilTag desiredPose;
+  private final DriveToPoseCommand driveToGoal;
 
-  private final ProfiledPIDController xController = new ProfiledPIDController(X_PID_CONSTANTS.kP, X_PID_CONSTANTS.kI, X_PID_CONSTANTS.kD, X_CONSTRAINTS);  
-  private final ProfiledPIDController yController = new ProfiledPIDController(Y_PID_CONSTANTS.kP, Y_PID_CONSTANTS.kI, Y_PID_CONSTANTS.kD, Y_CONSTRAINTS);  
-  private final ProfiledPIDController omegaController = new ProfiledPIDController(OMEGA_PID_CONSTANTS.kP, OMEGA_PID_CONSTANTS.kI, OMEGA_PID_CONSTANTS.kD, OMEGA_CONSTRAINTS);  
-
-  private PhotonTrackedTarget latestTarget;
-
-  /////////////////////////////// PID TUNING ///////////////////////////////
-  private ShuffleboardTab tab = Shuffleboard.getTab("TunePIDs");
-
-  private GenericEntry xP = tab.add("x P", 0).getEntry();
-  private GenericEntry xI = tab.add("x I", 0).getEntry();
-  private GenericEntry xD = tab.add("x D", 0).getEntry();
-  private GenericEntry yP = tab.add("y P", 0).getEntry();
-  private GenericEntry yI = tab.add("y I", 0).getEntry();
-  private GenericEntry yD = tab.add("y D", 0).getEntry();
-  private GenericEntry omegaP = tab.add("omega P", 0).getEntry();
-  private GenericEntry omegaI = tab.add("omega I", 0).getEntry();
-  private GenericEntry omegaD = tab.add("omega D", 0).getEntry();
-  /////////////////////////////////////////////////////////////////////////
+  // Goal in field coordinates, from the field layout or filtered across camera frames
+  private boolean goalFromLayout;
+  private double goalX, goalY, goalTheta;
+  private Pose2d goalPose;
 
 
   /** Creates a new ChaseTagCommand. */
   public ChaseTagCommand(VisionSubsystem vision, SwerveSubsystem swerve, Supplier<Pose2d> poseSupplier, PoseRelToAprilTag desiredPose) {
     this.vision = vision;
     this.swerve = swerve;
-    this.poseSupplier = poseSupplier;
     this.desiredPose = desiredPose;
 
-    xController.setTolerance(X_TOLERANCE);
-    yController.setTolerance(Y_TOLERANCE);
-    omegaController.setTolerance(OMEGA_TOLERANCE);
-    omegaController.enableContinuousInput(-Math.PI, Math.PI);
+    driveToGoal = new DriveToPoseCommand(swerve, poseSupplier, () -> goalPose);
+    driveToGoal.setName(getName());
 
     addRequirements(this.vision, this.vision.getCameras().get(0), this.swerve);
   }
@@ -82,79 +60,94 @@ public class ChaseTagCommand extends Command {
   // Called when the command is initially scheduled.
   @Override
   public void initialize() {
-    latestTarget = null;
-    var robotPose = poseSupplier.get();
-    omegaController.reset(robotPose.getRotation().getRadians());
-    xController.reset(robotPose.getX());
-    yController.reset(robotPose.getY());
-
-    /////////////////////////////// PID TUNING ///////////////////////////////
-    xController.setP(xP.getDouble(0));
-    xController.setI(xI.getDouble(0));
-    xController.setD(xD.getDouble(0));  
-    yController.setP(yP.getDouble(0));
-    yController.setI(yI.getDouble(0));
-    yController.setD(yD.getDouble(0));
-    omegaController.setP(omegaP.getDouble(0));
-    omegaController.setI(omegaI.getDouble(0));
-    omegaController.setD(omegaD.getDouble(0));
-    /////////////////////////////////////////////////////////////////////////
+    vision.getCameras().get(0).requestPipeline(this, VisionPipelineInfo.THREE_D_APRIL_TAG_PIPELINE, CHASE_TAG_PIPELINE_PRIORITY);
+
+    // The goal is fixed on the field, so if the tag is in the layout it doesn't need to be seen first
+    var tagPose = AprilTagTable.getPose(desiredPose.aprilTagId);
+    goalFromLayout = tagPose != null;
+    goalPose = null;
+    if (goalFromLayout) {
+      var layoutGoal = tagPose.transformBy(desiredPose.relativePose).toPose2d();
+      goalX = layoutGoal.getX();
+      goalY = layoutGoal.getY();
+      goalTheta = layoutGoal.getRotation().getRadians();
+      setGoal();
+    }
+
+    driveToGoal.initialize();
   }
 
 
   // Called every time the scheduler runs while the command is scheduled.
   @Override
   public void execute() {
-    var robotPose2d = poseSupplier.get();
-    var robotPose = new Pose3d(robotPose2d);
-
-    //for (PVCamera cam : vision.getCameras()) {  
+    // Without a known tag pose the goal comes from the camera, refined with every frame that sees the tag
+    if (!goalFromLayout) {
       var photonResultOptional = vision.getCameras().get(0).getLatestResult();
-      if(photonResultOptional.isPresent()) {
-        System.out.println("hjkjfhgueifkeyuefefe");
+      if (photonResultOptional.isPresent()) {
         var photonResult = photonResultOptional.get();
-        if(photonResult.hasTargets()) {
-          // var targetOptional = photonResult.getTargets().stream().filter(t -> t.getFiducialId() == desiredPose.aprilTagId).filter(t -> t.getPoseAmbiguity() <= 2).findFirst();
-          var   betstrget = photonResult.getBestTarget();
-          if(true) {
-            System.out.println(betstrget.getFiducialId());
-            latestTarget =betstrget;
-            var goalPose = robotPose.transformBy(vision.getCameras().get(0).getBotToCam()).transformBy(latestTarget.getBestCameraToTarget()).transformBy(desiredPose.relativePose).toPose2d();
-            
-            xController.setGoal(goalPose.getX());
-            yController.setGoal(goalPose.getY());
-            omegaController.setGoal(goalPose.getRotation().getRadians());
-          }
+        for (PhotonTrackedTarget target : photonResult.getTargets()) {
+          if (target.getFiducialId() != desiredPose.aprilTagId || target.getPoseAmbiguity() > AMBIGUITY_DEADBAND) continue;
+          updateGoalFromFrame(target, photonResult.getTimestampSeconds());
+          break;
         }
       }
-    // }
-  
-
-    if(latestTarget == null) {
-      swerve.drive(0, 0, 0, false, true);
-    } else {
-      var xSpeed = xController.calculate(robotPose.getX());
-      if(xController.atGoal()) xSpeed = 0;
+    }
 
-      var ySpeed = yController.calculate(robotPose.getY());
-      if(yController.atGoal()) ySpeed = 0;
+    // Stops while the goal is unknown
+    driveToGoal.execute();
+  }
 
-      var omegaSpeed = omegaController.calculate(robotPose2d.getRotation().getRadians());
-      if(omegaController.atGoal()) omegaSpeed = 0;
 
-      swerve.drive(xSpeed, ySpeed, omegaSpeed, false, true);
+  /**
+   * Computes the goal from a camera frame. The tag is placed on the field using the robot pose at the frame's capture
+   * time rather than the current pose, so the goal stays fixed in field coordinates while the robot moves. Successive
+   * frames are low-pass filtered to smooth out detection noise.
+   *
+   * @param target           The tracked tag.
+   * @param captureTimestamp Capture time of the frame, in the FPGA timebase.
+   */
+  private void updateGoalFromFrame(PhotonTrackedTarget target, double captureTimestamp) {
+    // From the estimator's history, which includes the vision corrections getPose() has, unlike PoseHistory
+    var poseAtCapture = swerve.samplePoseAt(captureTimestamp);
+    if (poseAtCapture.isEmpty()) return;
+
+    var robotPoseAtCapture = new Pose3d(poseAtCapture.get());
+    var framePose = robotPoseAtCapture
+      .transformBy(vision.getCameras().get(0).getBotToCam())
+      .transformBy(target.getBestCameraToTarget())
+      .transformBy(desiredPose.relativePose)
+      .toPose2d();
+
+    if (goalPose == null) {
+      goalX = framePose.getX();
+      goalY = framePose.getY();
+      goalTheta = framePose.getRotation().getRadians();
+    } else {
+      goalX += CHASE_TAG_GOAL_FILTER_GAIN * (framePose.getX() - goalX);
+      goalY += CHASE_TAG_GOAL_FILTER_GAIN * (framePose.getY() - goalY);
+      goalTheta = MathUtil.angleModulus(goalTheta + CHASE_TAG_GOAL_FILTER_GAIN * MathUtil.angleModulus(framePose.getRotation().getRadians() - goalTheta));
     }
+    setGoal();
+  }
+
+
+  private void setGoal() {
+    goalPose = new Pose2d(goalX, goalY, new Rotation2d(goalTheta));
   }
 
 
   // Called once the command ends or is interrupted.
   @Override
-  public void end(boolean interrupted) {}
+  public void end(boolean interrupted) {
+    vision.getCameras().get(0).releasePipeline(this);
+    driveToGoal.end(interrupted);
+  }
 
 
   // Returns true when the command should end.
   @Override
   public boolean isFinished() {
-    return xController.atGoal() && yController.atGoal() && omegaController.atGoal();
+    return driveToGoal.isFinished();
   }
 }
@@ -0,0 +1,223 @@
+// Copyright (c) FIRST and other WPILib contributors.
+// Open Source Software; you can modify and/or share it under the terms of
+// the WPILib BSD license file in the root directory of this project.
+
+package frc.robot.commands;
+
+
+import static frc.robot.Constants.VisionConstants.FINE_ALIGNMENT_ANGLE;
+import static frc.robot.Constants.VisionConstants.FINE_ALIGNMENT_DISTANCE;
+import static frc.robot.Constants.VisionConstants.FINE_ALIGNMENT_MAX_ANGULAR_SPEED;
+import static frc.robot.Constants.VisionConstants.FINE_ALIGNMENT_MAX_SPEED;
+import static frc.robot.Constants.VisionConstants.FINE_OMEGA_PID_CONSTANTS;
+import static frc.robot.Constants.VisionConstants.FINE_TRANSLATION_PID_CONSTANTS;
+import static frc.robot.Constants.VisionConstants.OMEGA_CONSTRAINTS;
+import static frc.robot.Constants.VisionConstants.OMEGA_PID_CONSTANTS;
+import static frc.robot.Constants.VisionConstants.OMEGA_TOLERANCE;
+import static frc.robot.Constants.VisionConstants.TRANSLATION_CONSTRAINTS;
+import static frc.robot.Constants.VisionConstants.X_PID_CONSTANTS;
+import static frc.robot.Constants.VisionConstants.X_TOLERANCE;
+import static frc.robot.Constants.VisionConstants.Y_PID_CONSTANTS;
+import static frc.robot.Constants.VisionConstants.Y_TOLERANCE;
+
+import java.util.function.Supplier;
+
+import edu.wpi.first.math.MathUtil;
+import edu.wpi.first.math.controller.PIDController;
+import edu.wpi.first.math.geometry.Pose2d;
+import edu.wpi.first.math.util.Units;
+import edu.wpi.first.networktables.GenericEntry;
+import edu.wpi.first.wpilibj.TimedRobot;
+import edu.wpi.first.wpilibj.Timer;
+import edu.wpi.first.wpilibj.shuffleboard.Shuffleboard;
+import edu.wpi.first.wpilibj.shuffleboard.ShuffleboardTab;
+import edu.wpi.first.wpilibj.smartdashboard.SmartDashboard;
+import edu.wpi.first.wpilibj2.command.Command;
+import frc.robot.subsystems.SwerveSubsystem;
+import frc.robot.utils.DriveToPoseProfile;
+
+/** A command that drives the robot to a field pose using the swerve drive.
+ * A {@link DriveToPoseProfile} moves a setpoint to the target along a straight line, with the rotation synchronized to
+ * it. The setpoint's velocity is driven as feedforward, and {@link PIDController}s only correct the robot's error from
+ * the setpoint position. Once the setpoint has arrived and the robot is close to the target, a separate, gentler set
+ * of controllers aligns it directly onto the target at limited speed.
+ * The target is read every loop, so it may move, and may be null while it is unknown: the robot then stops, and the
+ * profile restarts from the robot's state once a target is known again. The command does not finish without a target.
+ * The command ends when the robot reaches the target pose. The time it took is published as
+ * "&lt;command name&gt;/alignment time".
+ */
+public class DriveToPoseCommand extends Command {
+  private final SwerveSubsystem swerve;
+  private final Supplier<Pose2d> poseSupplier;
+  private final Supplier<Pose2d> targetSupplier;
+
+  private final PIDController xController = new PIDController(X_PID_CONSTANTS.kP, X_PID_CONSTANTS.kI, X_PID_CONSTANTS.kD);
+  private final PIDController yController = new PIDController(Y_PID_CONSTANTS.kP, Y_PID_CONSTANTS.kI, Y_PID_CONSTANTS.kD);
+  private final PIDController omegaController = new PIDController(OMEGA_PID_CONSTANTS.kP, OMEGA_PID_CONSTANTS.kI, OMEGA_PID_CONSTANTS.kD);
+  private final PIDController fineXController = new PIDController(FINE_TRANSLATION_PID_CONSTANTS.kP, FINE_TRANSLATION_PID_CONSTANTS.kI, FINE_TRANSLATION_PID_CONSTANTS.kD);
+  private final PIDController fineYController = new PIDController(FINE_TRANSLATION_PID_CONSTANTS.kP, FINE_TRANSLATION_PID_CONSTANTS.kI, FINE_TRANSLATION_PID_CONSTANTS.kD);
+  private final PIDController fineOmegaController = new PIDController(FINE_OMEGA_PID_CONSTANTS.kP, FINE_OMEGA_PID_CONSTANTS.kI, FINE_OMEGA_PID_CONSTANTS.kD);
+  private final DriveToPoseProfile profile = new DriveToPoseProfile(
+    TRANSLATION_CONSTRAINTS.maxVelocity,
+    TRANSLATION_CONSTRAINTS.maxAcceleration,
+    OMEGA_CONSTRAINTS.maxVelocity,
+    OMEGA_CONSTRAINTS.maxAcceleration
+  );
+  private final Timer alignmentTimer = new Timer();
+
+  private boolean profileActive;
+  private boolean fineAlignment;
+  private double lastExecuteTimestamp;
+
+  /////////////////////////////// PID TUNING ///////////////////////////////
+  // Shared by all instances, Shuffleboard titles can only be added once
+  private static final ShuffleboardTab tab = Shuffleboard.getTab("TunePIDs");
+
+  private static final GenericEntry xP = tab.add("x P", X_PID_CONSTANTS.kP).getEntry();
+  private static final GenericEntry xI = tab.add("x I", X_PID_CONSTANTS.kI).getEntry();
+  private static final GenericEntry xD = tab.add("x D", X_PID_CONSTANTS.kD).getEntry();
+  private static final GenericEntry yP = tab.add("y P", Y_PID_CONSTANTS.kP).getEntry();
+  private static final GenericEntry yI = tab.add("y I", Y_PID_CONSTANTS.kI).getEntry();
+  private static final GenericEntry yD = tab.add("y D", Y_PID_CONSTANTS.kD).getEntry();
+  private static final GenericEntry omegaP = tab.add("omega P", OMEGA_PID_CONSTANTS.kP).getEntry();
+  private static final GenericEntry omegaI = tab.add("omega I", OMEGA_PID_CONSTANTS.kI).getEntry();
+  private static final GenericEntry omegaD = tab.add("omega D", OMEGA_PID_CONSTANTS.kD).getEntry();
+  /////////////////////////////////////////////////////////////////////////
+
+
+  /** Creates a new DriveToPoseCommand.
+   *
+   * @param swerve The {@link SwerveSubsystem} used by this command to drive the robot.
+   * @param poseSupplier A Supplier of the current robot pose.
+   * @param targetSupplier A Supplier of the target field pose, read every loop. May return null while unknown.
+   */
+  public DriveToPoseCommand(SwerveSubsystem swerve, Supplier<Pose2d> poseSupplier, Supplier<Pose2d> targetSupplier) {
+    this.swerve = swerve;
+    this.poseSupplier = poseSupplier;
+    this.targetSupplier = targetSupplier;
+
+    xController.setTolerance(X_TOLERANCE);
+    yController.setTolerance(Y_TOLERANCE);
+    omegaController.setTolerance(Units.degreesToRadians(OMEGA_TOLERANCE));
+    omegaController.enableContinuousInput(-Math.PI, Math.PI);
+
+    fineXController.setTolerance(X_TOLERANCE);
+    fineYController.setTolerance(Y_TOLERANCE);
+    fineOmegaController.setTolerance(Units.degreesToRadians(OMEGA_TOLERANCE));
+    fineOmegaController.enableContinuousInput(-Math.PI, Math.PI);
+
+    addRequirements(this.swerve);
+  }
+
+
+  // Called when the command is initially scheduled.
+  @Override
+  public void initialize() {
+    profileActive = false;
+    fineAlignment = false;
+    alignmentTimer.restart();
+    lastExecuteTimestamp = Double.NaN;
+
+    /////////////////////////////// PID TUNING ///////////////////////////////
+    xController.setP(xP.getDouble(0));
+    xController.setI(xI.getDouble(0));
+    xController.setD(xD.getDouble(0));
+    yController.setP(yP.getDouble(0));
+    yController.setI(yI.getDouble(0));
+    yController.setD(yD.getDouble(0));
+    omegaController.setP(omegaP.getDouble(0));
+    omegaController.setI(omegaI.getDouble(0));
+    omegaController.setD(omegaD.getDouble(0));
+    /////////////////////////////////////////////////////////////////////////
+  }
+
+
+  // Called every time the scheduler runs while the command is scheduled.
+  @Override
+  public void execute() {
+    // Advance the profile by the time that actually passed, loops can overrun or be delayed
+    double now = Timer.getFPGATimestamp();
+    double dt = Double.isNaN(lastExecuteTimestamp) ? TimedRobot.kDefaultPeriod : now - lastExecuteTimestamp;
+    lastExecuteTimestamp = now;
+
+    var target = targetSupplier.get();
+    if (target == null) {
+      // Nothing to drive to yet, e.g. no pose selected, hold still and start over once there is a target
+      profileActive = false;
+      fineAlignment = false;
+      swerve.drive(0, 0, 0, false, true);
+      return;
+    }
+
+    var robotPose = poseSupplier.get();
+    double distance = robotPose.getTranslation().getDistance(target.getTranslation());
+    double angle = Math.abs(robotPose.getRotation().minus(target.getRotation()).getRadians());
+
+    // Leave fine alignment if the target moved away, e.g. a better vision estimate of it
+    if (fineAlignment && (distance > 2 * FINE_ALIGNMENT_DISTANCE || angle > 2 * FINE_ALIGNMENT_ANGLE)) {
+      fineAlignment = false;
+    }
+
+    if (!fineAlignment) {
+      if (!profileActive) {
+        // Start the profile from where the robot is and how it is moving, so there is no jump in commanded velocity
+        profile.reset(robotPose, swerve.getFieldVelocity());
+        xController.reset();
+        yController.reset();
+        omegaController.reset();
+        profileActive = true;
+      }
+      profile.calculate(dt, target);
+
+      if (profile.isFinished() && distance < FINE_ALIGNMENT_DISTANCE && angle < FINE_ALIGNMENT_ANGLE) {
+        fineAlignment = true;
+        profileActive = false;
+        fineXController.reset();
+        fineYController.reset();
+        fineOmegaController.reset();
+      }
+    }
+
+    double xSpeed, ySpeed, omegaSpeed;
+    if (!fineAlignment) {
+      // Profile velocity as feedforward, PID only corrects the error from the setpoint
+      xSpeed = profile.getVx() + xController.calculate(robotPose.getX(), profile.getX());
+      ySpeed = profile.getVy() + yController.calculate(robotPose.getY(), profile.getY());
+      omegaSpeed = profile.getOmega() + omegaController.calculate(robotPose.getRotation().getRadians(), profile.getTheta());
+    } else {
+      xSpeed = fineXController.calculate(robotPose.getX(), target.getX());
+      if(fineXController.atSetpoint()) xSpeed = 0;
+
+      ySpeed = fineYController.calculate(robotPose.getY(), target.getY());
+      if(fineYController.atSetpoint()) ySpeed = 0;
+
+      omegaSpeed = fineOmegaController.calculate(robotPose.getRotation().getRadians(), target.getRotation().getRadians());
+      if(fineOmegaController.atSetpoint()) omegaSpeed = 0;
+
+      // Limit speed so the final approach can't overshoot
+      double speed = Math.hypot(xSpeed, ySpeed);
+      if (speed > FINE_ALIGNMENT_MAX_SPEED) {
+        xSpeed *= FINE_ALIGNMENT_MAX_SPEED / speed;
+        ySpeed *= FINE_ALIGNMENT_MAX_SPEED / speed;
+      }
+      omegaSpeed = MathUtil.clamp(omegaSpeed, -FINE_ALIGNMENT_MAX_ANGULAR_SPEED, FINE_ALIGNMENT_MAX_ANGULAR_SPEED);
+    }
+
+    swerve.drive(xSpeed, ySpeed, omegaSpeed, true, true);
+  }
+
+
+  // Called once the command ends or is interrupted.
+  @Override
+  public void end(boolean interrupted) {
+    swerve.drive(0, 0, 0, false, true);
+    if (!interrupted) SmartDashboard.putNumber(getName() + "/alignment time", alignmentTimer.get());
+  }
+
+
+  // Returns true when the command should end.
+  @Override
+  public boolean isFinished() {
+    return fineAlignment && fineXController.atSetpoint() && fineYController.atSetpoint() && fineOmegaController.atSetpoint();
+  }
+}
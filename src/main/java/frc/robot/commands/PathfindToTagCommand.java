@@ -0,0 +1,50 @@
+// Copyright (c) FIRST and other WPILib contributors.
+// Open Source Software; you can modify and/or share it under the terms of
+// the WPILib BSD license file in the root directory of this project.
+
+package frc.robot.commands;
+
+
+import static frc.robot.Constants.VisionConstants.PATHFINDING_CONSTRAINTS;
+
+import java.util.function.Supplier;
+
+import com.pathplanner.lib.auto.AutoBuilder;
+import com.pathplanner.lib.pathfinding.Pathfinding;
+
+import edu.wpi.first.math.geometry.Pose2d;
+import edu.wpi.first.wpilibj.DriverStation;
+import edu.wpi.first.wpilibj2.command.SequentialCommandGroup;
+import frc.robot.Constants.VisionConstants.PoseRelToAprilTag;
+import frc.robot.subsystems.SwerveSubsystem;
+import frc.robot.subsystems.vision.AprilTagTable;
+
+/** A command that drives the robot to a pose relative to an AprilTag, around the obstacles on the field.
+ * The path to the tag's pose in the field layout is planned by PathPlanner's {@link Pathfinding} on the deployed
+ * navgrid, in the background, and followed with {@link AutoBuilder}. Once the path ends the robot is handed off to a
+ * {@link DriveToPoseCommand} for the final alignment.
+ * If the tag is not in the field layout, there is no pose to go to and the command does nothing.
+ */
+public class PathfindToTagCommand extends SequentialCommandGroup {
+
+  /** Creates a new PathfindToTagCommand.
+   *
+   * @param swerve The {@link SwerveSubsystem} used by this command to drive the robot.
+   * @param poseSupplier A Supplier of the current robot pose.
+   * @param target The pose relative to an AprilTag to drive to.
+   */
+  public PathfindToTagCommand(SwerveSubsystem swerve, Supplier<Pose2d> poseSupplier, PoseRelToAprilTag target) {
+    var tagPose = AprilTagTable.getPose(target.aprilTagId);
+    if (tagPose == null) {
+      DriverStation.reportWarning("PathfindToTagCommand: AprilTag " + target.aprilTagId + " is not in the field layout", false);
+      return;
+    }
+
+    // The layout is in blue alliance coordinates, like the navgrid, so the goal must not be flipped
+    var goalPose = tagPose.transformBy(target.relativePose).toPose2d();
+    addCommands(
+      AutoBuilder.pathfindToPose(goalPose, PATHFINDING_CONSTRAINTS, 0),
+      new DriveToPoseCommand(swerve, poseSupplier, () -> goalPose)
+    );
+  }
+}
@@ -5,11 +5,13 @@ import com.ctre.phoenix.led.CANdle;
 import edu.wpi.first.wpilibj2.command.SubsystemBase;
 import frc.robot.Constants.VisionConstants.PoseRelToAprilTag;
 import frc.robot.subsystems.vision.VisionSubsystem;
+import frc.robot.utils.LoopProfiler;
 import static frc.robot.Constants.CANdleConstants.*;
 public class CANdleSubsystem extends SubsystemBase {
     private final VisionSubsystem vision;
     private final CANdle candle;
     private PhotonTrackedTarget latestTarget;
+    private final LoopProfiler.Section periodicSection = LoopProfiler.section("CANdleSubsystem.periodic()");
 
     public CANdleSubsystem(VisionSubsystem vision, SwerveSubsystem swerve, PoseRelToAprilTag desiredPose) {
         this.vision = vision;
@@ -49,6 +51,8 @@ public class CANdleSubsystem extends SubsystemBase {
 
     @Override
     public void periodic() {
+        periodicSection.start();
         checkLight();
+        periodicSection.stop();
     }
 }
@@ -0,0 +1,184 @@
+// Copyright (c) FIRST and other WPILib contributors.
+// Open Source Software; you can modify and/or share it under the terms of
+// the WPILib BSD license file in the root directory of this project.
+
+package frc.robot.subsystems;
+
+import java.util.concurrent.locks.ReentrantLock;
+
+import edu.wpi.first.math.geometry.Rotation2d;
+import edu.wpi.first.math.kinematics.SwerveModulePosition;
+import edu.wpi.first.wpilibj.Notifier;
+import edu.wpi.first.wpilibj.Timer;
+import swervelib.SwerveDrive;
+
+
+/**
+ * Samples the swerve module positions and gyro yaw on a dedicated {@link Notifier} thread, independent of the 20 ms
+ * scheduler loop. Samples are timestamped and pushed into a lock-protected ring buffer which the main loop drains
+ * through {@link #drain(SampleConsumer)}.
+ */
+public class OdometryThread {
+  /** Receives drained odometry samples in the order they were taken. */
+  @FunctionalInterface
+  public interface SampleConsumer {
+    void accept(double timestampSeconds, Rotation2d yaw, SwerveModulePosition[] modulePositions);
+  }
+
+  private final SwerveDrive swerveDrive;
+  private final Notifier notifier;
+  private final double periodSeconds;
+  private final ReentrantLock lock = new ReentrantLock();
+
+  // Ring buffer written by the notifier thread, guarded by lock
+  private final double[] timestamps;
+  private final Rotation2d[] yaws;
+  private final SwerveModulePosition[][] positions;
+  private int head = 0;
+  private int size = 0;
+  private long droppedSamples = 0;
+  // Bumped by clear(), so a sample read before a reset is not pushed after it
+  private volatile int generation = 0;
+
+  // Copies handed to the consumer on the main thread, so the lock is not held while the estimator runs
+  private final double[] drainTimestamps;
+  private final Rotation2d[] drainYaws;
+  private final SwerveModulePosition[][] drainPositions;
+
+
+  /**
+   * Creates a new OdometryThread. The thread is not started until {@link #start()} is called.
+   *
+   * @param swerveDrive The {@link SwerveDrive} to sample.
+   * @param frequencyHz How often to sample, in Hz.
+   * @param capacity    Number of samples the buffer holds before the oldest ones are overwritten.
+   */
+  public OdometryThread(SwerveDrive swerveDrive, double frequencyHz, int capacity) {
+    this.swerveDrive = swerveDrive;
+    this.periodSeconds = 1.0 / frequencyHz;
+
+    timestamps = new double[capacity];
+    yaws = new Rotation2d[capacity];
+    positions = new SwerveModulePosition[capacity][];
+    drainTimestamps = new double[capacity];
+    drainYaws = new Rotation2d[capacity];
+    drainPositions = new SwerveModulePosition[capacity][];
+
+    notifier = new Notifier(this::sample);
+    notifier.setName("OdometryThread");
+  }
+
+
+  /** Starts sampling periodically. */
+  public void start() {
+    notifier.startPeriodic(periodSeconds);
+  }
+
+
+  /** Stops sampling. Samples already in the buffer can still be drained. */
+  public void stop() {
+    notifier.stop();
+  }
+
+
+  /**
+   * Takes one sample of the module positions and gyro yaw. Runs on the notifier thread.
+   */
+  private void sample() {
+    int sampleGeneration = generation;
+    SwerveModulePosition[] modulePositions = swerveDrive.getModulePositions();
+    Rotation2d yaw = swerveDrive.getYaw();
+    double timestamp = Timer.getFPGATimestamp();
+
+    lock.lock();
+    try {
+      // Cleared while this sample was being read, it may be from before an odometry reset
+      if (sampleGeneration != generation) return;
+
+      int index = (head + size) % timestamps.length;
+      timestamps[index] = timestamp;
+      yaws[index] = yaw;
+      positions[index] = modulePositions;
+
+      if (size == timestamps.length) {
+        // Buffer full, the main loop has fallen behind. Overwrite the oldest sample.
+        head = (head + 1) % timestamps.length;
+        droppedSamples++;
+      } else {
+        size++;
+      }
+    } finally {
+      lock.unlock();
+    }
+  }
+
+
+  /**
+   * Hands every sample taken since the last call to the consumer, oldest first, and empties the buffer. Should only be
+   * called from the main robot thread.
+   *
+   * @param consumer Receives each sample.
+   * @return The number of samples drained.
+   */
+  public int drain(SampleConsumer consumer) {
+    int count;
+    lock.lock();
+    try {
+      count = size;
+      for (int i = 0; i < count; i++) {
+        int index = (head + i) % timestamps.length;
+        drainTimestamps[i] = timestamps[index];
+        drainYaws[i] = yaws[index];
+        drainPositions[i] = positions[index];
+        yaws[index] = null;
+        positions[index] = null;
+      }
+      head = (head + count) % timestamps.length;
+      size = 0;
+    } finally {
+      lock.unlock();
+    }
+
+    for (int i = 0; i < count; i++) {
+      consumer.accept(drainTimestamps[i], drainYaws[i], drainPositions[i]);
+      drainYaws[i] = null;
+      drainPositions[i] = null;
+    }
+    return count;
+  }
+
+
+  /**
+   * Discards every sample in the buffer, and any sample being read concurrently. Used when odometry is reset so stale
+   * samples are not applied afterwards; call it after the reset.
+   */
+  public void clear() {
+    lock.lock();
+    try {
+      generation++;
+      for (int i = 0; i < timestamps.length; i++) {
+        yaws[i] = null;
+        positions[i] = null;
+      }
+      head = 0;
+      size = 0;
+    } finally {
+      lock.unlock();
+    }
+  }
+
+
+  /**
+   * Returns how many samples were overwritten because the buffer was full before it was drained.
+   *
+   * @return The number of dropped samples since startup.
+   */
+  public long getDroppedSamples() {
+    lock.lock();
+    try {
+      return droppedSamples;
+    } finally {
+      lock.unlock();
+    }
+  }
+}
@@ -6,19 +6,27 @@ package frc.robot.subsystems;
 
 import java.util.Map;
 
+import edu.wpi.first.math.geometry.Pose2d;
 import edu.wpi.first.wpilibj.GenericHID;
 import edu.wpi.first.wpilibj2.command.SubsystemBase;
 import frc.robot.Constants.VisionConstants.PoseRelToAprilTag;
+import frc.robot.subsystems.vision.AprilTagTable;
+import frc.robot.utils.LoopProfiler;
 
 public class OperatorBoard extends SubsystemBase {
   private final GenericHID operatorBoard;
+  private final LoopProfiler.Section periodicSection = LoopProfiler.section("OperatorBoard.periodic()");
 
   ///first sixteen buttons ar eeach related to specific pose in PosesRelToAprilTag express that relationshipo as map
+  // Button indices start at 1
   private final Map<Integer, PoseRelToAprilTag> buttonToPoseMap = Map.of(
-    0, PoseRelToAprilTag.SAMPLE_POSE
+    1, PoseRelToAprilTag.SAMPLE_POSE
     // TODO add the rest of the poses
   );
 
+  // Pose of the last pressed button, driven to by a DriveToPoseCommand
+  private PoseRelToAprilTag selectedPose = null;
+
 
   /** Creates a new OperatorBoard. */
   public OperatorBoard(int port) {
@@ -29,11 +37,28 @@ public class OperatorBoard extends SubsystemBase {
   /** This method will be called once per scheduler run. */
   @Override
   public void periodic() {
+    periodicSection.start();
+
     // check if any buttons are pressed and if so, run the command associated with that button
     for (Map.Entry<Integer, PoseRelToAprilTag> entry : buttonToPoseMap.entrySet()) {
       if(operatorBoard.getRawButtonPressed(entry.getKey())) {
-        // TODO
+        selectedPose = entry.getValue();
       }
     }
+
+    periodicSection.stop();
+  }
+
+
+  /**
+   * Returns the field pose selected on the board, for use as a DriveToPoseCommand target.
+   *
+   * @return The selected pose, or null if none was selected or its tag is not in the field layout.
+   */
+  public Pose2d getTargetPose() {
+    if (selectedPose == null) return null;
+
+    var tagPose = AprilTagTable.getPose(selectedPose.aprilTagId);
+    return tagPose != null ? tagPose.transformBy(selectedPose.relativePose).toPose2d() : null;
   }
 }
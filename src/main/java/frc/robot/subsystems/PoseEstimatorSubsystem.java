@@ -4,41 +4,124 @@
 
 package frc.robot.subsystems;
 
-import java.util.Optional;
-
-import org.photonvision.EstimatedRobotPose;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Consumer;
 
+import edu.wpi.first.math.kinematics.ChassisSpeeds;
+import edu.wpi.first.wpilibj.Timer;
 import edu.wpi.first.wpilibj2.command.SubsystemBase;
-import frc.robot.subsystems.vision.PVCamera;
+import frc.robot.subsystems.vision.LimelightCamera;
+import frc.robot.subsystems.vision.LimelightDownscaleController;
+import frc.robot.subsystems.vision.LimelightOrientationPublisher;
+import frc.robot.subsystems.vision.TagVisibilityPredictor;
+import frc.robot.subsystems.vision.VisionMeasurementBatch;
+import frc.robot.subsystems.vision.VisionMeasurementGate;
+import frc.robot.subsystems.vision.VisionObstacleTracker;
+import frc.robot.subsystems.vision.VisionPoseEstimate;
+import frc.robot.subsystems.vision.VisionSource;
 import frc.robot.subsystems.vision.VisionSubsystem;
+import frc.robot.utils.LoopProfiler;
 
 
 /** A subsystem that estimates the robot's pose on the field using odometry and vision data. */
 public class PoseEstimatorSubsystem extends SubsystemBase {
   private final SwerveSubsystem swerve;
   private final VisionSubsystem vision;
+  private final LoopProfiler.Section periodicSection = LoopProfiler.section("PoseEstimatorSubsystem.periodic()");
+
+  // Vision measurements from all cameras for the current loop, applied in capture order
+  private final VisionMeasurementBatch visionBatch;
+  private final VisionMeasurementGate visionGate = new VisionMeasurementGate();
+  private final Consumer<VisionPoseEstimate> addVisionMeasurement;
+  private final LimelightOrientationPublisher limelightOrientation;
+  private final List<TagVisibilityPredictor> tagPredictors = new ArrayList<>();
+  private final List<LimelightDownscaleController> downscaleControllers = new ArrayList<>();
+  private final VisionObstacleTracker obstacleTracker;
+  private int poseResetCount = 0;
 
 
   /** Creates a new PoseEstimatorSubsystem. */
   public PoseEstimatorSubsystem(SwerveSubsystem swerve, VisionSubsystem vision) {
     this.swerve = swerve;
     this.vision = vision;
+    this.visionBatch = new VisionMeasurementBatch(16, vision.getSources().size());
+    this.addVisionMeasurement = this::addGatedVisionMeasurement;
+    this.limelightOrientation = new LimelightOrientationPublisher(vision.getLimelights());
+    this.obstacleTracker = new VisionObstacleTracker(vision.getLimelights());
+    for (LimelightCamera limelight : vision.getLimelights()) {
+      tagPredictors.add(new TagVisibilityPredictor(limelight));
+      downscaleControllers.add(new LimelightDownscaleController(limelight.getCameraName()));
+    }
   }
 
 
   @Override
   public void periodic() {
+    periodicSection.start();
+
     // Update the odometry of the swerve drive
     swerve.updateOdometry();
 
-    // Add vision measurements from all cameras to the swerve drive
-    for (PVCamera camera : vision.getCameras())
+    // A reset pose has not been checked against vision yet
+    if (swerve.getPoseResetCount() != poseResetCount) {
+      poseResetCount = swerve.getPoseResetCount();
+      visionGate.reset();
+      for (TagVisibilityPredictor predictor : tagPredictors) predictor.reset();
+    }
+
+    // Send the fresh heading to the Limelights for MegaTag2, with a single flush
+    ChassisSpeeds robotVelocity = null;
+    if (!vision.getLimelights().isEmpty()) {
+      robotVelocity = swerve.getRobotVelocity();
+      limelightOrientation.publish(swerve.getHeading().getDegrees(), Math.toDegrees(robotVelocity.omegaRadiansPerSecond));
+    }
+
+    // Collect every vision measurement the cameras produced since the last loop
+    for (VisionSource source : vision.getSources())
     {
-      Optional<EstimatedRobotPose> poseEst = camera.getEstimatedGlobalPose();
-      if (poseEst.isPresent())
+      VisionPoseEstimate estimate;
+      while ((estimate = source.pollEstimate()) != null)
       {
-        var pose = poseEst.get();
-        swerve.addVisionMeasurement(pose.estimatedPose.toPose2d(), pose.timestampSeconds, camera.getEstimationStdDevs());
+        visionBatch.add(estimate);
+      }
+    }
+
+    // Add them to the swerve drive in a single pass, ordered by capture timestamp
+    visionBatch.apply(addVisionMeasurement);
+
+    // Point the Limelights at the tags they should see from the updated pose, and pick their detector resolution
+    if (robotVelocity != null) {
+      double robotSpeed = Math.hypot(robotVelocity.vxMetersPerSecond, robotVelocity.vyMetersPerSecond);
+      double now = Timer.getFPGATimestamp();
+      for (int i = 0; i < tagPredictors.size(); i++) {
+        TagVisibilityPredictor predictor = tagPredictors.get(i);
+        predictor.update(swerve.getPose(), now);
+        downscaleControllers.get(i).update(predictor.getNearestTagDistance(), robotSpeed);
+      }
+
+      // Robots seen by the Limelights' detectors become obstacles for the pathfinder
+      obstacleTracker.update(swerve.getPoseHistory(), swerve.getPose().getTranslation(), now);
+    }
+
+    periodicSection.stop();
+  }
+
+
+  /**
+   * Adds a vision measurement to the swerve drive unless the gate rejects it as an outlier against the pose at its
+   * capture time. The gate may also inflate its standard deviations.
+   *
+   * @param estimate The vision measurement.
+   */
+  private void addGatedVisionMeasurement(VisionPoseEstimate estimate) {
+    // The estimator's own history, which unlike PoseHistory includes vision corrections applied to the past
+    var predictedPose = swerve.samplePoseAt(estimate.timestampSeconds()).orElse(null);
+    var stdDevs = visionGate.check(estimate, predictedPose);
+    if (stdDevs != null) {
+      swerve.addVisionMeasurement(estimate.pose(), estimate.timestampSeconds(), stdDevs);
+      for (TagVisibilityPredictor predictor : tagPredictors) {
+        if (predictor.getLimelightName().equals(estimate.cameraName())) predictor.estimateAccepted(estimate.timestampSeconds());
       }
     }
   }
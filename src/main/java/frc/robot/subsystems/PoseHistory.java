@@ -0,0 +1,170 @@
+// Copyright (c) FIRST and other WPILib contributors.
+// Open Source Software; you can modify and/or share it under the terms of
+// the WPILib BSD license file in the root directory of this project.
+
+package frc.robot.subsystems;
+
+import edu.wpi.first.math.MathUtil;
+
+
+/**
+ * A fixed-capacity history of the robot pose and field-relative velocity, for looking up where the robot was at a past
+ * time (e.g. when a camera frame was captured).
+ *
+ * <p>Samples are stored in parallel primitive arrays used as a ring buffer, so recording and lookups do not allocate.
+ * Lookups binary search the timestamps and interpolate linearly between the two neighbouring samples (the shortest
+ * way for the heading). Velocities are finite differences of consecutive samples. Once full, the oldest sample is
+ * overwritten. Recorded samples are never revised, so a correction applied to the past afterwards (e.g. a latency
+ * compensated vision measurement) does not show up in them.
+ *
+ * <p>Not thread safe; record and read from the main robot thread.
+ */
+public class PoseHistory {
+  private final int mask;
+  private final double[] t, x, y, theta, vx, vy, omega;
+  private int start = 0;
+  private int size = 0;
+
+
+  /**
+   * Creates a new PoseHistory.
+   *
+   * @param capacity Number of samples kept, rounded up to a power of two.
+   */
+  public PoseHistory(int capacity) {
+    int length = Integer.highestOneBit(Math.max(capacity, 2) - 1) << 1;
+    mask = length - 1;
+    t = new double[length];
+    x = new double[length];
+    y = new double[length];
+    theta = new double[length];
+    vx = new double[length];
+    vy = new double[length];
+    omega = new double[length];
+  }
+
+
+  /**
+   * Records a pose. Samples that are not newer than the newest recorded one are ignored.
+   *
+   * @param timestampSeconds Time of the pose, in the FPGA timebase.
+   * @param poseX            Field X in m.
+   * @param poseY            Field Y in m.
+   * @param poseTheta        Heading in rad.
+   */
+  public void record(double timestampSeconds, double poseX, double poseY, double poseTheta) {
+    double sampleVx = 0, sampleVy = 0, sampleOmega = 0;
+    if (size > 0) {
+      int prev = (start + size - 1) & mask;
+      double dt = timestampSeconds - t[prev];
+      if (dt <= 0) return;
+      sampleVx = (poseX - x[prev]) / dt;
+      sampleVy = (poseY - y[prev]) / dt;
+      sampleOmega = MathUtil.angleModulus(poseTheta - theta[prev]) / dt;
+    }
+
+    int i;
+    if (size == t.length) {
+      i = start;
+      start = (start + 1) & mask;
+    } else {
+      i = (start + size) & mask;
+      size++;
+    }
+
+    t[i] = timestampSeconds;
+    x[i] = poseX;
+    y[i] = poseY;
+    theta[i] = poseTheta;
+    vx[i] = sampleVx;
+    vy[i] = sampleVy;
+    omega[i] = sampleOmega;
+  }
+
+
+  /** Removes all samples, e.g. after the pose was reset. */
+  public void clear() {
+    start = 0;
+    size = 0;
+  }
+
+
+  /** @return The number of samples recorded. */
+  public int size() {
+    return size;
+  }
+
+
+  /** @return Timestamp of the oldest sample in s, NaN if empty. */
+  public double getOldestTimestamp() {
+    return size > 0 ? t[start] : Double.NaN;
+  }
+
+
+  /** @return Timestamp of the newest sample in s, NaN if empty. */
+  public double getNewestTimestamp() {
+    return size > 0 ? t[(start + size - 1) & mask] : Double.NaN;
+  }
+
+
+  /**
+   * Interpolates the pose and velocity at a time into a caller-owned sample. Times outside the recorded range are
+   * clamped to the oldest or newest sample.
+   *
+   * @param timestampSeconds Time in the FPGA timebase.
+   * @param out              Sample to overwrite.
+   * @return false if the history is empty, in which case out is unchanged.
+   */
+  public boolean sample(double timestampSeconds, Sample out) {
+    if (size == 0) return false;
+
+    // Index of the first sample at or after the timestamp
+    int lo = 0, hi = size;
+    while (lo < hi) {
+      int mid = (lo + hi) >>> 1;
+      if (t[(start + mid) & mask] < timestampSeconds) lo = mid + 1;
+      else hi = mid;
+    }
+
+    if (lo == 0 || lo == size) {
+      int i = (start + (lo == 0 ? 0 : size - 1)) & mask;
+      out.set(t[i], x[i], y[i], theta[i], vx[i], vy[i], omega[i]);
+      out.timestampSeconds = timestampSeconds;
+      return true;
+    }
+
+    int a = (start + lo - 1) & mask;
+    int b = (start + lo) & mask;
+    double f = (timestampSeconds - t[a]) / (t[b] - t[a]);
+    out.set(
+      timestampSeconds,
+      x[a] + (x[b] - x[a]) * f,
+      y[a] + (y[b] - y[a]) * f,
+      MathUtil.angleModulus(theta[a] + MathUtil.angleModulus(theta[b] - theta[a]) * f),
+      vx[a] + (vx[b] - vx[a]) * f,
+      vy[a] + (vy[b] - vy[a]) * f,
+      omega[a] + (omega[b] - omega[a]) * f
+    );
+    return true;
+  }
+
+
+  /**
+   * A mutable pose and field-relative velocity at a point in time, filled by {@link PoseHistory#sample}.
+   */
+  public static class Sample {
+    public double timestampSeconds;
+    public double x, y, theta;      // m and rad
+    public double vx, vy, omega;    // m/s and rad/s, field-relative
+
+    private void set(double timestampSeconds, double x, double y, double theta, double vx, double vy, double omega) {
+      this.timestampSeconds = timestampSeconds;
+      this.x = x;
+      this.y = y;
+      this.theta = theta;
+      this.vx = vx;
+      this.vy = vy;
+      this.omega = omega;
+    }
+  }
+}
@@ -0,0 +1,137 @@
+// Copyright (c) FIRST and other WPILib contributors.
+// Open Source Software; you can modify and/or share it under the terms of
+// the WPILib BSD license file in the root directory of this project.
+
+package frc.robot.subsystems;
+
+import java.util.EnumSet;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import edu.wpi.first.networktables.GenericEntry;
+import edu.wpi.first.networktables.NetworkTableEvent;
+import edu.wpi.first.networktables.NetworkTableInstance;
+import edu.wpi.first.wpilibj.shuffleboard.Shuffleboard;
+import edu.wpi.first.wpilibj.shuffleboard.ShuffleboardTab;
+import edu.wpi.first.wpilibj2.command.SubsystemBase;
+import frc.robot.utils.LoopProfiler;
+import swervelib.SwerveModule;
+import swervelib.parser.PIDFConfig;
+
+
+/**
+ * A subsystem that lets the swerve drive and angle PIDF gains be tuned live from the TunePIDs Shuffleboard tab.
+ *
+ * <p>The entries are watched with NetworkTables listeners, so nothing is read or sent over CAN until a value actually
+ * changes. When one does, the new gains are applied to all modules in a single pass.
+ */
+public class SwervePIDTuner extends SubsystemBase {
+  private final SwerveSubsystem swerve;
+  private final LoopProfiler.Section periodicSection = LoopProfiler.section("SwervePIDTuner.periodic()");
+
+  // Set from the NetworkTables listener thread whenever any tuning entry changes
+  private final AtomicBoolean dirty = new AtomicBoolean(false);
+
+  private final ShuffleboardTab tab = Shuffleboard.getTab("TunePIDs");
+
+  private final GenericEntry driveP, driveI, driveD, driveF;
+  private final GenericEntry angleP, angleI, angleD, angleF;
+
+  // Gains currently applied to the modules
+  private double appliedDriveP, appliedDriveI, appliedDriveD, appliedDriveF;
+  private double appliedAngleP, appliedAngleI, appliedAngleD, appliedAngleF;
+  private final double driveIZ, angleIZ;
+
+
+  /**
+   * Creates a new SwervePIDTuner. The Shuffleboard entries start at the gains loaded from the swerve JSON config.
+   *
+   * @param swerve The {@link SwerveSubsystem} whose modules are tuned.
+   */
+  public SwervePIDTuner(SwerveSubsystem swerve) {
+    this.swerve = swerve;
+
+    PIDFConfig drive = swerve.getSwerveDriveConfiguration().modules[0].getDrivePIDF();
+    PIDFConfig angle = swerve.getSwerveDriveConfiguration().modules[0].getAnglePIDF();
+
+    appliedDriveP = drive.p;
+    appliedDriveI = drive.i;
+    appliedDriveD = drive.d;
+    appliedDriveF = drive.f;
+    driveIZ = drive.iz;
+
+    appliedAngleP = angle.p;
+    appliedAngleI = angle.i;
+    appliedAngleD = angle.d;
+    appliedAngleF = angle.f;
+    angleIZ = angle.iz;
+
+    driveP = addTunable("drive P", appliedDriveP);
+    driveI = addTunable("drive I", appliedDriveI);
+    driveD = addTunable("drive D", appliedDriveD);
+    driveF = addTunable("drive F", appliedDriveF);
+
+    angleP = addTunable("angle P", appliedAngleP);
+    angleI = addTunable("angle I", appliedAngleI);
+    angleD = addTunable("angle D", appliedAngleD);
+    angleF = addTunable("angle F", appliedAngleF);
+  }
+
+
+  /**
+   * Adds an entry to the TunePIDs tab and marks the tuner dirty whenever its value changes.
+   *
+   * @param title        Title of the entry on the tab.
+   * @param initialValue Value the entry starts with.
+   * @return The created {@link GenericEntry}.
+   */
+  private GenericEntry addTunable(String title, double initialValue) {
+    GenericEntry entry = tab.add(title, initialValue).getEntry();
+    NetworkTableInstance.getDefault().addListener(entry, EnumSet.of(NetworkTableEvent.Kind.kValueAll), event -> dirty.set(true));
+    return entry;
+  }
+
+
+  /** This method will be called once per scheduler run. */
+  @Override
+  public void periodic() {
+    periodicSection.start();
+    if (dirty.getAndSet(false)) applyChangedGains();
+    periodicSection.stop();
+  }
+
+
+  /**
+   * Reads the tuning entries and applies any gains that differ from those already on the modules.
+   */
+  private void applyChangedGains() {
+    double dP = driveP.getDouble(appliedDriveP);
+    double dI = driveI.getDouble(appliedDriveI);
+    double dD = driveD.getDouble(appliedDriveD);
+    double dF = driveF.getDouble(appliedDriveF);
+    if (dP != appliedDriveP || dI != appliedDriveI || dD != appliedDriveD || dF != appliedDriveF) {
+      PIDFConfig config = new PIDFConfig(dP, dI, dD, dF, driveIZ);
+      for (SwerveModule module : swerve.getSwerveDrive().getModules()) {
+        module.setDrivePIDF(config);
+      }
+      appliedDriveP = dP;
+      appliedDriveI = dI;
+      appliedDriveD = dD;
+      appliedDriveF = dF;
+    }
+
+    double aP = angleP.getDouble(appliedAngleP);
+    double aI = angleI.getDouble(appliedAngleI);
+    double aD = angleD.getDouble(appliedAngleD);
+    double aF = angleF.getDouble(appliedAngleF);
+    if (aP != appliedAngleP || aI != appliedAngleI || aD != appliedAngleD || aF != appliedAngleF) {
+      PIDFConfig config = new PIDFConfig(aP, aI, aD, aF, angleIZ);
+      for (SwerveModule module : swerve.getSwerveDrive().getModules()) {
+        module.setAnglePIDF(config);
+      }
+      appliedAngleP = aP;
+      appliedAngleI = aI;
+      appliedAngleD = aD;
+      appliedAngleF = aF;
+    }
+  }
+}
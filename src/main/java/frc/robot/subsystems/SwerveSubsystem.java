@@ -5,11 +5,15 @@
 package frc.robot.subsystems;
 
 import java.io.File;
+import java.io.IOException;
+import java.util.Optional;
 
 import com.pathplanner.lib.auto.AutoBuilder;
 import com.pathplanner.lib.config.PIDConstants;
 import com.pathplanner.lib.config.RobotConfig;
 import com.pathplanner.lib.controllers.PPHolonomicDriveController;
+import com.pathplanner.lib.pathfinding.LocalADStar;
+import com.pathplanner.lib.pathfinding.Pathfinding;
 
 import edu.wpi.first.math.Matrix;
 import edu.wpi.first.math.estimator.SwerveDrivePoseEstimator;
@@ -21,20 +25,20 @@ import edu.wpi.first.math.kinematics.SwerveDriveKinematics;
 import edu.wpi.first.math.numbers.N1;
 import edu.wpi.first.math.numbers.N3;
 import edu.wpi.first.math.trajectory.Trajectory;
-import edu.wpi.first.networktables.GenericEntry;
 import edu.wpi.first.wpilibj.DriverStation;
 import edu.wpi.first.wpilibj.Filesystem;
-import edu.wpi.first.wpilibj.shuffleboard.Shuffleboard;
-import edu.wpi.first.wpilibj.shuffleboard.ShuffleboardTab;
+import edu.wpi.first.wpilibj.RobotBase;
+import edu.wpi.first.wpilibj.Timer;
 import edu.wpi.first.wpilibj2.command.Command;
 import edu.wpi.first.wpilibj2.command.SubsystemBase;
 import edu.wpi.first.wpilibj2.command.sysid.SysIdRoutine.Config;
+import frc.robot.utils.DStarLitePathfinder;
+import frc.robot.utils.LoopProfiler;
+import frc.robot.utils.NavGrid;
 import swervelib.SwerveController;
 import swervelib.SwerveDrive;
 import swervelib.math.SwerveMath;
 import swervelib.SwerveDriveTest;
-import swervelib.SwerveModule;
-import swervelib.parser.PIDFConfig;
 import swervelib.parser.SwerveDriveConfiguration;
 import swervelib.parser.SwerveParser;
 import swervelib.telemetry.SwerveDriveTelemetry;
@@ -48,19 +52,20 @@ import static frc.robot.Constants.SwerveConstants.*;
 public class SwerveSubsystem extends SubsystemBase {
   private final SwerveDrive swerveDrive;
 
-  /////////////////////////////// PID TUNING ///////////////////////////////
-  private ShuffleboardTab tab = Shuffleboard.getTab("TunePIDs");
+  // High-rate odometry sampling, null in simulation where YAGSL's own odometry thread is used
+  private final OdometryThread odometryThread;
+  private final OdometryThread.SampleConsumer odometrySampleConsumer;
 
-  private GenericEntry driveP = tab.add("drive P", 0).getEntry();
-  private GenericEntry driveI = tab.add("drive I", 0).getEntry();
-  private GenericEntry driveD = tab.add("drive D", 0).getEntry();
-  private GenericEntry driveF = tab.add("drive F", 0).getEntry();
+  // Latest fused pose, refreshed by the main loop so readers never wait on the estimator
+  private volatile Pose2d latestPose = new Pose2d();
 
-  private GenericEntry angleP = tab.add("angle P", 0).getEntry();
-  private GenericEntry angleI = tab.add("angle I", 0).getEntry();
-  private GenericEntry angleD = tab.add("angle D", 0).getEntry();
-  private GenericEntry angleF = tab.add("angle F", 0).getEntry();
-  /////////////////////////////////////////////////////////////////////////
+  // Fused pose after every odometry update, for latency compensation
+  private final PoseHistory poseHistory = new PoseHistory(POSE_HISTORY_CAPACITY);
+
+  // Incremented whenever the pose is reset, so consumers of the pose can tell
+  private int poseResetCount = 0;
+
+  private final LoopProfiler.Section updateOdometrySection = LoopProfiler.section("SwerveSubsystem.updateOdometry()");
 
   /**
    * Creates a new SwerveSubsystem.
@@ -92,6 +97,22 @@ public class SwerveSubsystem extends SubsystemBase {
     // Set motors to brake mode
     setMotorBrake(true);
 
+    // Sample odometry on our own faster thread instead of YAGSL's. In simulation YAGSL's thread also steps the
+    // maple-sim physics, so it is left running there.
+    if (RobotBase.isReal()) {
+      swerveDrive.stopOdometryThread();
+      odometryThread = new OdometryThread(swerveDrive, ODOMETRY_FREQUENCY, ODOMETRY_BUFFER_CAPACITY);
+      odometrySampleConsumer = (timestamp, yaw, modulePositions) -> {
+        Pose2d pose = swerveDrive.swerveDrivePoseEstimator.updateWithTime(timestamp, yaw, modulePositions);
+        poseHistory.record(timestamp, pose.getX(), pose.getY(), pose.getRotation().getRadians());
+      };
+      odometryThread.start();
+    } else {
+      odometryThread = null;
+      odometrySampleConsumer = null;
+    }
+    refreshPose();
+
     try
     {
       // Load PathPlanner config
@@ -131,6 +152,16 @@ public class SwerveSubsystem extends SubsystemBase {
         },
         this // Reference to this subsystem to set requirements
       );
+
+      // Plans on-the-fly paths around the deployed navgrid and obstacles seen by vision on a background thread
+      try
+      {
+        Pathfinding.setPathfinder(new DStarLitePathfinder(NavGrid.loadDeployed()));
+      } catch (IOException e)
+      {
+        DriverStation.reportError("SwerveSubsystem: failed to load the navgrid, falling back to LocalADStar: " + e.getMessage(), false);
+        Pathfinding.setPathfinder(new LocalADStar());
+      }
     } catch (Exception e)
     {
       throw new RuntimeException(e);
@@ -140,14 +171,7 @@ public class SwerveSubsystem extends SubsystemBase {
 
   /** This method will be called once per scheduler run */
   @Override
-  public void periodic() {
-    /////////////////////////////// PID TUNING ///////////////////////////////
-    for(SwerveModule module : swerveDrive.getModules()) {
-      module.setDrivePIDF(new PIDFConfig(driveP.getDouble(.0020645), driveI.getDouble(0), driveD.getDouble(0), driveF.getDouble(0)));
-      module.setAnglePIDF(new PIDFConfig(angleP.getDouble(.008), angleI.getDouble(0), angleD.getDouble(.02), angleF.getDouble(0)));
-    }
-    /////////////////////////////////////////////////////////////////////////
-  }
+  public void periodic() {}
 
 
   /**
@@ -194,6 +218,10 @@ public class SwerveSubsystem extends SubsystemBase {
    */
   public void resetOdometry(Pose2d initialHolonomicPose) {
     swerveDrive.resetOdometry(initialHolonomicPose);
+    if (odometryThread != null) odometryThread.clear();
+    poseHistory.clear();
+    poseResetCount++;
+    refreshPose();
   }
 
   /**
@@ -201,17 +229,60 @@ public class SwerveSubsystem extends SubsystemBase {
    * method.
    */
   public void resetOdometry() {
-    swerveDrive.resetOdometry(new Pose2d(new Translation2d(0, 0), Rotation2d.fromDegrees(0)));
+    resetOdometry(new Pose2d(new Translation2d(0, 0), Rotation2d.fromDegrees(0)));
   }
 
 
   /**
-   * Gets the current pose (position and rotation) of the robot, as reported by odometry.
+   * Gets the current pose (position and rotation) of the robot, as reported by odometry. This is the latest fused value
+   * from the last {@link #updateOdometry()} and never blocks.
    *
    * @return The robot's pose
    */
   public Pose2d getPose() {
-    return swerveDrive.getPose();
+    return latestPose;
+  }
+
+
+  /**
+   * Gets the pose estimator's estimate of where the robot was at a past time, interpolated from its odometry history.
+   *
+   * @param timestampSeconds Time in the FPGA timebase.
+   * @return The {@link Pose2d} at that time, or empty if the history is empty.
+   */
+  public Optional<Pose2d> samplePoseAt(double timestampSeconds) {
+    return swerveDrive.swerveDrivePoseEstimator.sampleAt(timestampSeconds);
+  }
+
+
+  /**
+   * Returns how many times the pose was reset by {@link #resetOdometry(Pose2d)} or {@link #zeroGyro()}, so estimates
+   * tracking the pose can start over when it changes.
+   *
+   * @return The number of pose resets since startup.
+   */
+  public int getPoseResetCount() {
+    return poseResetCount;
+  }
+
+
+  /**
+   * Returns the history of fused poses, recorded on every odometry update. Use it from the main robot thread to find
+   * where the robot was at a past time without allocating. Poses are kept as recorded: latency compensated vision
+   * corrections applied later are not reflected, use {@link #samplePoseAt(double)} where that matters.
+   *
+   * @return The {@link PoseHistory}.
+   */
+  public PoseHistory getPoseHistory() {
+    return poseHistory;
+  }
+
+
+  /**
+   * Caches the pose estimator's current estimate for {@link #getPose()}.
+   */
+  private void refreshPose() {
+    latestPose = swerveDrive.getPose();
   }
 
 
@@ -240,6 +311,10 @@ public class SwerveSubsystem extends SubsystemBase {
    */
   public void zeroGyro() {
     swerveDrive.zeroGyro();
+    if (odometryThread != null) odometryThread.clear();
+    poseHistory.clear();
+    poseResetCount++;
+    refreshPose();
   }
 
 
@@ -402,10 +477,21 @@ public class SwerveSubsystem extends SubsystemBase {
 
 
   /**
-   * Update odometry. Should be run every loop.
+   * Update odometry. Should be run every loop. On the real robot this applies every sample taken by the
+   * {@link OdometryThread} since the last call, in order, at the time each was taken.
    */
   public void updateOdometry() {
-    swerveDrive.updateOdometry();
+    updateOdometrySection.start();
+    if (odometryThread != null) {
+      odometryThread.drain(odometrySampleConsumer);
+      refreshPose();
+      swerveDrive.field.setRobotPose(latestPose);
+    } else {
+      swerveDrive.updateOdometry();
+      refreshPose();
+      poseHistory.record(Timer.getFPGATimestamp(), latestPose.getX(), latestPose.getY(), latestPose.getRotation().getRadians());
+    }
+    updateOdometrySection.stop();
   }
 
 
@@ -418,6 +504,7 @@ public class SwerveSubsystem extends SubsystemBase {
    */
   public void addVisionMeasurement(Pose2d estimatedPose, double timestampSeconds, Matrix<N3, N1> estimationStdDevs) {
     swerveDrive.addVisionMeasurement(estimatedPose, timestampSeconds, estimationStdDevs);
+    refreshPose();
   }
 
 
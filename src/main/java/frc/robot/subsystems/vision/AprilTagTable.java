@@ -0,0 +1,122 @@
+// Copyright (c) FIRST and other WPILib contributors.
+// Open Source Software; you can modify and/or share it under the terms of
+// the WPILib BSD license file in the root directory of this project.
+
+package frc.robot.subsystems.vision;
+
+import static frc.robot.Constants.VisionConstants.aprilTagFieldLayout;
+
+import edu.wpi.first.apriltag.AprilTag;
+import edu.wpi.first.math.geometry.Pose3d;
+
+
+/**
+ * The field's AprilTag layout compiled once at startup into primitive arrays indexed by fiducial ID.
+ *
+ * <p>{@link edu.wpi.first.apriltag.AprilTagFieldLayout#getTagPose(int)} searches a list and returns a new
+ * {@link java.util.Optional} every call. The lookups here are O(1) and do not allocate, for per-target work in the
+ * vision hot paths.
+ */
+public final class AprilTagTable {
+  private static final int SIZE;
+
+  private static final double[] x, y, z, yaw;
+  private static final Pose3d[] poses;
+  private static final long[] valid;
+
+  static {
+    int maxId = 0;
+    for (AprilTag tag : aprilTagFieldLayout.getTags()) {
+      maxId = Math.max(maxId, tag.ID);
+    }
+    SIZE = maxId + 1;
+
+    x = new double[SIZE];
+    y = new double[SIZE];
+    z = new double[SIZE];
+    yaw = new double[SIZE];
+    poses = new Pose3d[SIZE];
+    valid = new long[(SIZE + 63) / 64];
+
+    for (AprilTag tag : aprilTagFieldLayout.getTags()) {
+      if (tag.ID < 0) continue;
+      x[tag.ID] = tag.pose.getX();
+      y[tag.ID] = tag.pose.getY();
+      z[tag.ID] = tag.pose.getZ();
+      yaw[tag.ID] = tag.pose.getRotation().getZ();
+      poses[tag.ID] = tag.pose;
+      valid[tag.ID >>> 6] |= 1L << (tag.ID & 63);
+    }
+  }
+
+  private AprilTagTable() {}
+
+
+  /**
+   * Returns whether a tag with the given ID exists on the field.
+   *
+   * @param id Fiducial ID.
+   * @return true if the tag is in the layout.
+   */
+  public static boolean isValid(int id) {
+    return id >= 0 && id < SIZE && (valid[id >>> 6] & (1L << (id & 63))) != 0;
+  }
+
+
+  /**
+   * Returns one more than the largest fiducial ID in the layout, i.e. the length of the lookup arrays.
+   *
+   * @return The table size.
+   */
+  public static int size() {
+    return SIZE;
+  }
+
+
+  /** @return Field X of the tag in m. Only meaningful if {@link #isValid(int)}. */
+  public static double getX(int id) {
+    return x[id];
+  }
+
+
+  /** @return Field Y of the tag in m. Only meaningful if {@link #isValid(int)}. */
+  public static double getY(int id) {
+    return y[id];
+  }
+
+
+  /** @return Height of the tag in m. Only meaningful if {@link #isValid(int)}. */
+  public static double getZ(int id) {
+    return z[id];
+  }
+
+
+  /** @return Field yaw of the tag's normal in rad. Only meaningful if {@link #isValid(int)}. */
+  public static double getYaw(int id) {
+    return yaw[id];
+  }
+
+
+  /**
+   * Returns the tag's field pose, shared rather than copied.
+   *
+   * @param id Fiducial ID.
+   * @return The tag's {@link Pose3d}, or null if the tag is not in the layout.
+   */
+  public static Pose3d getPose(int id) {
+    return isValid(id) ? poses[id] : null;
+  }
+
+
+  /**
+   * Returns the distance on the floor from a field position to a tag.
+   *
+   * @param id     Fiducial ID, must be {@link #isValid(int)}.
+   * @param fieldX Field X in m.
+   * @param fieldY Field Y in m.
+   * @return The 2D distance in m.
+   */
+  public static double distance2d(int id, double fieldX, double fieldY) {
+    return Math.hypot(x[id] - fieldX, y[id] - fieldY);
+  }
+}
@@ -0,0 +1,135 @@
+// Copyright (c) FIRST and other WPILib contributors.
+// Open Source Software; you can modify and/or share it under the terms of
+// the WPILib BSD license file in the root directory of this project.
+
+package frc.robot.subsystems.vision;
+
+import static frc.robot.Constants.VisionConstants.LIMELIGHT_MAX_FIDUCIALS;
+import static frc.robot.Constants.VisionConstants.VISION_QUEUE_CAPACITY;
+
+import edu.wpi.first.math.Matrix;
+import edu.wpi.first.math.VecBuilder;
+import edu.wpi.first.math.geometry.Pose2d;
+import edu.wpi.first.math.geometry.Rotation2d;
+import edu.wpi.first.math.geometry.Transform3d;
+import edu.wpi.first.math.numbers.N1;
+import edu.wpi.first.math.numbers.N3;
+import edu.wpi.first.math.util.Units;
+import frc.robot.utils.LimelightHelpers;
+import frc.robot.utils.LimelightHelpers.MutablePoseEstimate;
+
+
+/**
+ * A Limelight running an AprilTag pipeline, producing MegaTag1 or MegaTag2 pose estimates.
+ *
+ * <p>Every botpose frame published since the previous poll is read from a NetworkTables queue, so no frames are lost
+ * when the camera runs faster than the robot loop. MegaTag2 takes its heading from the robot gyro, so its estimates
+ * carry no rotation information and are given an infinite theta standard deviation.
+ */
+public class LimelightCamera implements VisionSource {
+  private final String name;
+  private final Transform3d botToCam;
+  private final boolean megaTag2;
+  private final LimelightHelpers.BotPoseSubscriber subscriber;
+
+  // Frames read from the queue but not yet polled
+  private final MutablePoseEstimate[] frames = new MutablePoseEstimate[VISION_QUEUE_CAPACITY];
+  private int frameCount = 0;
+  private int nextFrame = 0;
+
+
+  /**
+   * Creates a new LimelightCamera and sends it its mounting position.
+   *
+   * @param name     Name of the Limelight.
+   * @param botToCam Transform from the robot's center of rotation to the camera.
+   * @param megaTag2 Whether to use MegaTag2 instead of MegaTag1 estimates.
+   */
+  public LimelightCamera(String name, Transform3d botToCam, boolean megaTag2) {
+    this.name = name;
+    this.botToCam = botToCam;
+    this.megaTag2 = megaTag2;
+    this.subscriber = megaTag2
+      ? LimelightHelpers.subscribeBotPoseEstimate_wpiBlue_MegaTag2(name, VISION_QUEUE_CAPACITY)
+      : LimelightHelpers.subscribeBotPoseEstimate_wpiBlue(name, VISION_QUEUE_CAPACITY);
+
+    for (int i = 0; i < frames.length; i++) {
+      frames[i] = new MutablePoseEstimate(LIMELIGHT_MAX_FIDUCIALS);
+    }
+
+    LimelightHelpers.setCameraPose_RobotSpace(
+      name,
+      botToCam.getX(),
+      botToCam.getY(),
+      botToCam.getZ(),
+      Units.radiansToDegrees(botToCam.getRotation().getX()),
+      Units.radiansToDegrees(botToCam.getRotation().getY()),
+      Units.radiansToDegrees(botToCam.getRotation().getZ())
+    );
+  }
+
+
+  @Override
+  public VisionPoseEstimate pollEstimate() {
+    while (true) {
+      if (nextFrame == frameCount) {
+        frameCount = subscriber.readQueue(frames);
+        nextFrame = 0;
+        if (frameCount == 0) return null;
+      }
+
+      MutablePoseEstimate frame = frames[nextFrame++];
+      if (frame.valid && frame.tagCount > 0) return toVisionPoseEstimate(frame);
+    }
+  }
+
+
+  /**
+   * Converts a decoded Limelight frame into a {@link VisionPoseEstimate}, using the fiducials' ambiguity and the
+   * standard deviation heuristic shared with the other sources.
+   */
+  private VisionPoseEstimate toVisionPoseEstimate(MutablePoseEstimate frame) {
+    double ambiguity = 0;
+    for (int i = 0; i < frame.fiducialCount; i++) {
+      ambiguity += Math.max(frame.getFiducialAmbiguity(i), 0);
+    }
+    if (frame.fiducialCount > 0) ambiguity /= frame.fiducialCount;
+
+    Matrix<N3, N1> stdDevs = VisionSource.calculateStdDevs(frame.tagCount, frame.avgTagDist);
+    if (megaTag2) {
+      stdDevs = VecBuilder.fill(stdDevs.get(0, 0), stdDevs.get(1, 0), Double.MAX_VALUE);
+    }
+
+    return new VisionPoseEstimate(
+      name,
+      new Pose2d(frame.x, frame.y, new Rotation2d(frame.yawRadians)),
+      frame.timestampSeconds,
+      stdDevs,
+      frame.tagCount,
+      frame.avgTagDist,
+      ambiguity
+    );
+  }
+
+
+  @Override
+  public String getCameraName() {
+    return name;
+  }
+
+
+  @Override
+  public Transform3d getBotToCam() {
+    return botToCam;
+  }
+
+
+  /**
+   * Returns whether this camera produces MegaTag2 estimates, which need the robot orientation every loop.
+   *
+   * @return true for MegaTag2, false for MegaTag1.
+   */
+  public boolean isMegaTag2() {
+    return megaTag2;
+  }
+}
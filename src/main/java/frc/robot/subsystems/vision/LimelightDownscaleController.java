@@ -0,0 +1,88 @@
+// Copyright (c) FIRST and other WPILib contributors.
+// Open Source Software; you can modify and/or share it under the terms of
+// the WPILib BSD license file in the root directory of this project.
+
+package frc.robot.subsystems.vision;
+
+import static frc.robot.Constants.VisionConstants.*;
+
+import edu.wpi.first.networktables.DoubleArrayEntry;
+import edu.wpi.first.networktables.DoublePublisher;
+import edu.wpi.first.networktables.NetworkTable;
+import edu.wpi.first.networktables.NetworkTableInstance;
+import frc.robot.utils.LimelightHelpers;
+
+
+/**
+ * Picks a Limelight's AprilTag detector downscale factor from the distance to the nearest expected tag and the robot
+ * speed.
+ *
+ * <p>A tag's expected width in pixels follows from its distance and the camera's field of view. The largest supported
+ * factor that still leaves the tag {@link frc.robot.Constants.VisionConstants#DOWNSCALE_MIN_TAG_PIXELS} wide is used,
+ * so close tags are detected at a higher frame rate. The required width grows with speed to allow for motion blur, and
+ * the factor only increases with some margin so it doesn't flip back and forth. Without an expected tag the full
+ * resolution is used. The chosen factor and the camera's reported fps are published under "LimelightDownscale".
+ */
+public class LimelightDownscaleController {
+  private final String limelightName;
+  private final double focalLengthPixels = LIMELIGHT_IMAGE_WIDTH / 2 / Math.tan(LIMELIGHT_HORIZONTAL_FOV / 2);
+
+  private final DoubleArrayEntry hwEntry;
+  private final DoublePublisher downscalePub, fpsPub;
+
+  private int factorIndex = -1;
+
+
+  /**
+   * Creates a new LimelightDownscaleController.
+   *
+   * @param limelightName Name of the Limelight.
+   */
+  public LimelightDownscaleController(String limelightName) {
+    this.limelightName = limelightName;
+    this.hwEntry = LimelightHelpers.getLimelightDoubleArrayEntry(limelightName, "hw");
+
+    NetworkTable table = NetworkTableInstance.getDefault().getTable("LimelightDownscale").getSubTable(limelightName);
+    downscalePub = table.getDoubleTopic("downscale").publish();
+    fpsPub = table.getDoubleTopic("fps").publish();
+  }
+
+
+  /**
+   * Chooses the downscale factor and sends it to the Limelight if it changed.
+   *
+   * @param nearestTagDistance Distance from the camera to the nearest expected tag in m, infinite if none.
+   * @param robotSpeed         Translational speed of the robot in m/s.
+   */
+  public void update(double nearestTagDistance, double robotSpeed) {
+    int index = chooseFactorIndex(nearestTagDistance, robotSpeed);
+    if (index != factorIndex) {
+      factorIndex = index;
+      LimelightHelpers.SetFiducialDownscalingOverride(limelightName, LIMELIGHT_DOWNSCALE_FACTORS[index]);
+      downscalePub.set(LIMELIGHT_DOWNSCALE_FACTORS[index]);
+    }
+
+    // hw: fps, cpu temp, ram usage, temp
+    double[] hw = hwEntry.get();
+    if (hw.length > 0) fpsPub.set(hw[0]);
+  }
+
+
+  private int chooseFactorIndex(double nearestTagDistance, double robotSpeed) {
+    if (!Double.isFinite(nearestTagDistance)) return 0;
+
+    double tagPixels = focalLengthPixels * APRILTAG_SIZE / Math.max(nearestTagDistance, 0.1);
+    double requiredPixels = DOWNSCALE_MIN_TAG_PIXELS * (1 + DOWNSCALE_SPEED_PENALTY * robotSpeed);
+
+    int index = 0;
+    for (int i = LIMELIGHT_DOWNSCALE_FACTORS.length - 1; i > 0; i--) {
+      // Only step up past the current factor with margin, step down as soon as the tag gets too small
+      double margin = i > factorIndex ? DOWNSCALE_HYSTERESIS : 1;
+      if (tagPixels / LIMELIGHT_DOWNSCALE_FACTORS[i] >= requiredPixels * margin) {
+        index = i;
+        break;
+      }
+    }
+    return index;
+  }
+}
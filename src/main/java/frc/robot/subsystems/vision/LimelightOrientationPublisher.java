@@ -0,0 +1,47 @@
+// Copyright (c) FIRST and other WPILib contributors.
+// Open Source Software; you can modify and/or share it under the terms of
+// the WPILib BSD license file in the root directory of this project.
+
+package frc.robot.subsystems.vision;
+
+import java.util.List;
+
+import frc.robot.utils.LimelightHelpers;
+
+
+/**
+ * Sends the robot heading to every Limelight once per loop, as MegaTag2 requires.
+ *
+ * <p>{@link LimelightHelpers#SetRobotOrientation} flushes NetworkTables on every call. This writes each camera's
+ * orientation without flushing and then flushes once, so several Limelights cost a single flush per loop. It should
+ * be called right after odometry is updated, so the cameras get the freshest heading.
+ */
+public class LimelightOrientationPublisher {
+  private final List<LimelightCamera> limelights;
+
+
+  /**
+   * Creates a new LimelightOrientationPublisher.
+   *
+   * @param limelights The Limelights to send the orientation to.
+   */
+  public LimelightOrientationPublisher(List<LimelightCamera> limelights) {
+    this.limelights = limelights;
+  }
+
+
+  /**
+   * Writes the orientation to every Limelight and flushes NetworkTables once.
+   *
+   * @param yawDegrees          Field-relative robot yaw, in deg (blue alliance origin).
+   * @param yawRateDegreesPerSec Robot yaw rate, in deg/s.
+   */
+  public void publish(double yawDegrees, double yawRateDegreesPerSec) {
+    if (limelights.isEmpty()) return;
+
+    for (int i = 0; i < limelights.size(); i++) {
+      LimelightHelpers.SetRobotOrientation_NoFlush(limelights.get(i).getCameraName(), yawDegrees, yawRateDegreesPerSec, 0, 0, 0, 0);
+    }
+    LimelightHelpers.Flush();
+  }
+}
@@ -4,8 +4,10 @@
 
 package frc.robot.subsystems.vision;
 
+import java.util.EnumSet;
 import java.util.List;
 import java.util.Optional;
+import java.util.concurrent.atomic.AtomicReference;
 
 import org.photonvision.EstimatedRobotPose;
 import org.photonvision.PhotonCamera;
@@ -13,12 +15,16 @@ import org.photonvision.PhotonPoseEstimator;
 import org.photonvision.targeting.PhotonPipelineResult;
 import org.photonvision.targeting.PhotonTrackedTarget;
 
-import edu.wpi.first.math.Matrix;
-import edu.wpi.first.math.VecBuilder;
+import edu.wpi.first.math.geometry.Pose2d;
 import edu.wpi.first.math.geometry.Transform3d;
-import edu.wpi.first.math.numbers.N1;
-import edu.wpi.first.math.numbers.N3;
+import edu.wpi.first.networktables.IntegerPublisher;
+import edu.wpi.first.networktables.NetworkTableEvent;
+import edu.wpi.first.networktables.NetworkTableInstance;
+import edu.wpi.first.networktables.NetworkTableListenerPoller;
+import edu.wpi.first.util.WPIUtilJNI;
 import edu.wpi.first.wpilibj2.command.SubsystemBase;
+import frc.robot.utils.LoopProfiler;
+import frc.robot.utils.SpscQueue;
 
 import static frc.robot.Constants.VisionConstants.*;
 
@@ -26,14 +32,29 @@ import static frc.robot.Constants.VisionConstants.*;
 /**
  * A subsystem that interfaces with the PhotonVision camera and processes vision data to estimate the
  * robot's pose on the field.
+ *
+ * <p>Frames are processed on a dedicated worker thread, woken by NetworkTables whenever the camera publishes a new
+ * result. Each pose estimate is handed to the main loop through a lock-free queue, drained with
+ * {@link #pollEstimate()}.
  */
-public class PVCamera extends SubsystemBase {
+public class PVCamera extends SubsystemBase implements VisionSource {
   public final PhotonCamera camera;
   private final Transform3d botToCam;
   private final PhotonPoseEstimator photonPoseEstimator;
+  private final LoopProfiler.Section periodicSection;
+  private final VisionPipelineManager pipelines;
 
-  private List<PhotonPipelineResult> allUnreadResults3D;
-  private Matrix<N3, N1> curStdDevs;
+  // Worker -> main loop handoff
+  private final SpscQueue<VisionPoseEstimate> estimates = new SpscQueue<>(VISION_QUEUE_CAPACITY);
+  private final AtomicReference<PhotonPipelineResult> newestResult = new AtomicReference<>();
+  private final Thread worker;
+
+  // Estimates dropped because the queue was full, i.e. the main loop stopped draining it. Worker thread only.
+  private long droppedEstimates = 0;
+  private final IntegerPublisher droppedEstimatesPub;
+
+  // Newest result received since the previous loop, only touched by the main thread
+  private Optional<PhotonPipelineResult> latestResult = Optional.empty();
 
 
   /** Creates a new Camera. */
@@ -42,125 +63,178 @@ public class PVCamera extends SubsystemBase {
     this.botToCam = botToCam;
     this.photonPoseEstimator = new PhotonPoseEstimator(aprilTagFieldLayout, primaryMultiTagStrat, botToCam);
     this.photonPoseEstimator.setMultiTagFallbackStrategy(fallbackSingleTagStrat);
-
-    updateResults(); // Fetch initial results
+    this.periodicSection = LoopProfiler.section("PVCamera[" + camName + "].periodic()");
+    this.pipelines = new VisionPipelineManager(camera, VisionPipelineInfo.THREE_D_APRIL_TAG_PIPELINE);
+    this.droppedEstimatesPub = NetworkTableInstance.getDefault().getTable("PVCamera").getSubTable(camName)
+      .getIntegerTopic("dropped estimates").publish();
+
+    worker = new Thread(this::processFrames, "PVCamera-" + camName);
+    worker.setDaemon(true);
+    worker.start();
   }
 
 
   /** This method will be called once per scheduler run. */
   @Override
   public void periodic() {
-    updateResults();
+    periodicSection.start();
+    pipelines.periodic();
+    latestResult = Optional.ofNullable(newestResult.getAndSet(null));
+    periodicSection.stop();
   }
 
 
   /**
-   * Updates {@link allUnreadResults2D} and {@link allUnreadResults3D} for both 2D and 3D pipelines.
+   * Worker thread loop. Waits for the camera to publish, then estimates a pose from every unread frame.
    */
-  public void updateResults() {
-    camera.setPipelineIndex(VisionPipelineInfo.THREE_D_APRIL_TAG_PIPELINE.pipelineIndex);
-    allUnreadResults3D = camera.getAllUnreadResults(); 
+  private void processFrames() {
+    try (NetworkTableListenerPoller poller = new NetworkTableListenerPoller(NetworkTableInstance.getDefault())) {
+      poller.addListener(camera.getCameraTable().getTopic("rawBytes"), EnumSet.of(NetworkTableEvent.Kind.kValueAll));
+
+      while (!Thread.currentThread().isInterrupted()) {
+        // Also wake periodically in case an event was coalesced or missed
+        WPIUtilJNI.waitForObjectTimeout(poller.getHandle(), 0.1);
+        poller.readQueue();
+
+        for (PhotonPipelineResult result : camera.getAllUnreadResults()) {
+          // Drop frames until the camera confirms the pipeline switch
+          if (!pipelines.accepts(result.getTimestampSeconds())) continue;
+
+          newestResult.set(result);
+          if (pipelines.getActivePipeline() == VisionPipelineInfo.THREE_D_APRIL_TAG_PIPELINE) {
+            estimate(result).ifPresent(this::offerEstimate);
+          }
+        }
+      }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+  }
+
+
+  /** Queues an estimate for the main loop, counting it as dropped if the queue is full. Runs on the worker thread. */
+  private void offerEstimate(VisionPoseEstimate estimate) {
+    if (!estimates.offer(estimate)) droppedEstimatesPub.set(++droppedEstimates);
   }
 
 
   /**
-   * The latest estimated robot pose on the field from vision data. This may be empty. This should
-   * only be called once per loop.
-   *
-   * <p>Also includes updates for the standard deviations, which can (optionally) be retrieved with
-   * {@link getEstimationStdDevs}
+   * Estimates the robot pose from a single frame, including standard deviations from the heuristic in
+   * {@link VisionSource#calculateStdDevs}. Runs on the worker thread; must not be called concurrently.
    *
-   * @return An {@link EstimatedRobotPose} with an estimated pose, estimate timestamp, and targets
-   * used for estimation.
+   * @param result The camera frame.
+   * @return The {@link VisionPoseEstimate}, or empty if the frame has no usable targets.
    */
-  public Optional<EstimatedRobotPose> getEstimatedGlobalPose() {
-    Optional<EstimatedRobotPose> visionEst = Optional.empty();
-    for (var change : allUnreadResults3D) {
-      if(change.hasTargets()) {
-        visionEst = photonPoseEstimator.update(change);
-        updateEstimationStdDevs(visionEst, change.getTargets());
-     
-      }
+  public Optional<VisionPoseEstimate> estimate(PhotonPipelineResult result) {
+    if (!result.hasTargets()) return Optional.empty();
+
+    Optional<EstimatedRobotPose> visionEst = photonPoseEstimator.update(result);
+    if (visionEst.isEmpty()) return Optional.empty();
+
+    Pose2d pose = visionEst.get().estimatedPose.toPose2d();
+    List<PhotonTrackedTarget> targets = result.getTargets();
+
+    // See how many known tags we found, and calculate average-distance and ambiguity metrics
+    int numTags = 0;
+    double avgDist = 0;
+    double ambiguity = 0;
+    for (int i = 0; i < targets.size(); i++) {
+      PhotonTrackedTarget tgt = targets.get(i);
+      int id = tgt.getFiducialId();
+      if (!AprilTagTable.isValid(id)) continue;
+      numTags++;
+      avgDist += AprilTagTable.distance2d(id, pose.getX(), pose.getY());
+      ambiguity += Math.max(tgt.getPoseAmbiguity(), 0);
+    }
+    if (numTags > 0) {
+      avgDist /= numTags;
+      ambiguity /= numTags;
     }
-    return visionEst;
+
+    return Optional.of(new VisionPoseEstimate(
+      camera.getName(),
+      pose,
+      visionEst.get().timestampSeconds,
+      VisionSource.calculateStdDevs(numTags, avgDist),
+      numTags,
+      avgDist,
+      ambiguity
+    ));
+  }
+
+
+  @Override
+  public String getCameraName() {
+    return camera.getName();
   }
 
 
   /**
-   * Calculates new standard deviations This algorithm is a heuristic that creates dynamic standard
-   * deviations based on number of tags, estimation strategy, and distance from the tags.
+   * Removes and returns the oldest pose estimate produced by the worker. Should be drained every loop from the main
+   * robot thread.
    *
-   * @param estimatedPose The estimated pose to guess standard deviations for.
-   * @param targets All targets in this camera frame.
+   * @return The oldest unread {@link VisionPoseEstimate}, or null if there are none.
    */
-  private void updateEstimationStdDevs(
-    Optional<EstimatedRobotPose> estimatedPose, List<PhotonTrackedTarget> targets) {
-    if (estimatedPose.isEmpty()) {
-      // No pose input. Default to single-tag std devs
-      curStdDevs = kSingleTagStdDevs;
-
-    } else {
-      // Pose present. Start running Heuristic
-      var estStdDevs = kSingleTagStdDevs;
-      int numTags = 0;
-      double avgDist = 0;
-
-      // Precalculation - see how many tags we found, and calculate an average-distance metric
-      for (var tgt : targets) {
-        var tagPose = photonPoseEstimator.getFieldTags().getTagPose(tgt.getFiducialId());
-        if (tagPose.isEmpty()) continue;
-        numTags++;
-        avgDist += tagPose.get().toPose2d().getTranslation().getDistance(estimatedPose.get().estimatedPose.toPose2d().getTranslation());
-      }
+  @Override
+  public VisionPoseEstimate pollEstimate() {
+    return estimates.poll();
+  }
 
-      if (numTags == 0) {
-        // No tags visible. Default to single-tag std devs
-        curStdDevs = kSingleTagStdDevs;
-      } else {
-        // One or more tags visible, run the full heuristic.
-        avgDist /= numTags;
-
-        // Decrease std devs if multiple targets are visible
-        if (numTags > 1) estStdDevs = kMultiTagStdDevs;
-        // Increase std devs based on (average) distance
-        if (numTags == 1 && avgDist > 4) estStdDevs = VecBuilder.fill(Double.MAX_VALUE, Double.MAX_VALUE, Double.MAX_VALUE);
-        else estStdDevs = estStdDevs.times(1 + (avgDist * avgDist / 30)); curStdDevs = estStdDevs;
-      }
-    }
+
+  /**
+   * Requests a pipeline for this camera, see {@link VisionPipelineManager#request}. Only pose estimates from the 3D
+   * AprilTag pipeline are produced, so requesting another pipeline pauses them.
+   *
+   * @param requester Owner of the request, usually the requesting command.
+   * @param pipeline  The pipeline.
+   * @param priority  Priority of the request, higher wins.
+   */
+  public void requestPipeline(Object requester, VisionPipelineInfo pipeline, int priority) {
+    pipelines.request(requester, pipeline, priority);
+  }
+
+
+  /**
+   * Withdraws a pipeline request made with {@link #requestPipeline}.
+   *
+   * @param requester Owner of the request.
+   */
+  public void releasePipeline(Object requester) {
+    pipelines.release(requester);
   }
 
 
   /**
-   * Returns the latest standard deviations of the estimated pose from {@link
-   * #getEstimatedGlobalPose()}, for use with {@link
-   * edu.wpi.first.math.estimator.SwerveDrivePoseEstimator SwerveDrivePoseEstimator}. This should
-   * only be used when there are targets visible.
+   * Returns the pipeline the camera has confirmed running, which {@link #getLatestResult()} comes from.
+   *
+   * @return The active {@link VisionPipelineInfo}, or null while a pipeline switch is pending.
    */
-  public Matrix<N3, N1> getEstimationStdDevs() {
-    return curStdDevs;
+  public VisionPipelineInfo getActivePipeline() {
+    return pipelines.getActivePipeline();
   }
 
 
   /**
-   * Retrieves the latest result from the camera 3D pipeline.
-   * 
-   * <p>This method fetches all unread results from #D april ttag pipeline and returns the latest one if available.
-   * If no unread results are found, it returns an empty {@link Optional}.
+   * Retrieves the latest result from the camera's active pipeline.
+   *
+   * <p>This returns the newest frame the camera published since the previous loop. If no new frames arrived, it
+   * returns an empty {@link Optional}.
    *
    * @return an {@link Optional} containing the latest {@link PhotonPipelineResult} if available,
    * or an empty {@link Optional} if there are no unread results.
    */
   public Optional<PhotonPipelineResult> getLatestResult() {
-    return allUnreadResults3D.isEmpty() ? Optional.empty() : Optional.of(allUnreadResults3D.get(allUnreadResults3D.size() - 1));
+    return latestResult;
   }
 
 
   /**
    * Returns the transform from the robot's center of rotation to the camera.
-   * 
+   *
    * @return {@link Transform3D} from the robot's center of rotation to the camera.
-   * 
+   *
    */
+  @Override
   public Transform3d getBotToCam() {
     return botToCam;
   }
@@ -0,0 +1,221 @@
+// Copyright (c) FIRST and other WPILib contributors.
+// Open Source Software; you can modify and/or share it under the terms of
+// the WPILib BSD license file in the root directory of this project.
+
+package frc.robot.subsystems.vision;
+
+import static frc.robot.Constants.VisionConstants.*;
+
+import java.util.Arrays;
+
+import edu.wpi.first.math.geometry.Pose2d;
+import edu.wpi.first.math.geometry.Transform3d;
+import frc.robot.utils.LimelightHelpers;
+
+
+/**
+ * Predicts which AprilTags a Limelight can see from the robot pose, and restricts the camera's detector to them.
+ *
+ * <p>Every tag is projected into the camera frustum given by the camera's {@link Transform3d} and field of view. The
+ * IDs of tags in front of the camera, facing it and within range are sent as the fiducial ID filter, and the union of
+ * their expected image regions (padded for pose error) as the crop window. Both are only sent when they change.
+ *
+ * <p>The prediction is only as good as the pose. If no tag is predicted, or this camera has had no estimate accepted
+ * within {@link frc.robot.Constants.VisionConstants#TAG_PREDICTION_TRUST_TIMEOUT} since the pose was last
+ * {@link #reset()}, the filter and crop are opened up fully and no nearest tag distance is reported, so a wrong pose
+ * cannot keep the camera from seeing the tags that would correct it, whether by filtering or by downscaling.
+ */
+public class TagVisibilityPredictor {
+  private final String limelightName;
+
+  // Camera mounting, roll is ignored
+  private final double camForward, camLeft, camUp, camYaw, camPitchCos, camPitchSin;
+  private final double tanHalfHorizontalFov = Math.tan(LIMELIGHT_HORIZONTAL_FOV / 2);
+  private final double tanHalfVerticalFov = Math.tan(LIMELIGHT_VERTICAL_FOV / 2);
+
+  private final long[] visible = new long[(AprilTagTable.size() + 63) / 64];
+  private final long[] sentVisible = new long[visible.length];
+  private final double[] crop = new double[4];
+  private final double[] sentCrop = new double[4];
+  private boolean sent = false;
+  private double nearestDistance = Double.POSITIVE_INFINITY;
+  private double lastAcceptedTimestamp = Double.NEGATIVE_INFINITY;
+
+
+  /**
+   * Creates a new TagVisibilityPredictor.
+   *
+   * @param limelight The Limelight to predict for.
+   */
+  public TagVisibilityPredictor(LimelightCamera limelight) {
+    this.limelightName = limelight.getCameraName();
+
+    Transform3d botToCam = limelight.getBotToCam();
+    camForward = botToCam.getX();
+    camLeft = botToCam.getY();
+    camUp = botToCam.getZ();
+    camYaw = botToCam.getRotation().getZ();
+    camPitchCos = Math.cos(botToCam.getRotation().getY());
+    camPitchSin = Math.sin(botToCam.getRotation().getY());
+  }
+
+
+  /**
+   * Records that a pose estimate from this camera was accepted, confirming the pose the prediction is based on.
+   *
+   * @param timestampSeconds Capture time of the estimate, in the FPGA timebase.
+   */
+  public void estimateAccepted(double timestampSeconds) {
+    lastAcceptedTimestamp = Math.max(lastAcceptedTimestamp, timestampSeconds);
+  }
+
+
+  /** Forgets accepted estimates, e.g. after the pose was reset, opening the camera up fully until one is accepted. */
+  public void reset() {
+    lastAcceptedTimestamp = Double.NEGATIVE_INFINITY;
+  }
+
+
+  /**
+   * Predicts the visible tags from the robot pose and sends the ID filter and crop window if they changed.
+   *
+   * @param robotPose        The current robot pose.
+   * @param timestampSeconds The current time, in the FPGA timebase.
+   */
+  public void update(Pose2d robotPose, double timestampSeconds) {
+    if (timestampSeconds - lastAcceptedTimestamp <= TAG_PREDICTION_TRUST_TIMEOUT) {
+      predict(robotPose.getX(), robotPose.getY(), robotPose.getRotation().getRadians());
+    } else {
+      // The pose is not confirmed by this camera, don't restrict the camera or let it be downscaled
+      nearestDistance = Double.POSITIVE_INFINITY;
+      openFully();
+    }
+
+    if (!sent || !Arrays.equals(visible, sentVisible)) {
+      LimelightHelpers.SetFiducialIDFiltersOverride(limelightName, visibleIds());
+      System.arraycopy(visible, 0, sentVisible, 0, visible.length);
+    }
+    if (!sent || !Arrays.equals(crop, sentCrop)) {
+      LimelightHelpers.setCropWindow(limelightName, crop[0], crop[1], crop[2], crop[3]);
+      System.arraycopy(crop, 0, sentCrop, 0, crop.length);
+    }
+    sent = true;
+  }
+
+
+  /**
+   * Fills {@link #visible} and {@link #crop} for a robot at the given field position and heading.
+   */
+  private void predict(double robotX, double robotY, double robotYaw) {
+    Arrays.fill(visible, 0);
+    nearestDistance = Double.POSITIVE_INFINITY;
+    double xMin = Double.POSITIVE_INFINITY, xMax = Double.NEGATIVE_INFINITY;
+    double yMin = Double.POSITIVE_INFINITY, yMax = Double.NEGATIVE_INFINITY;
+
+    double robotCos = Math.cos(robotYaw);
+    double robotSin = Math.sin(robotYaw);
+    double camX = robotX + robotCos * camForward - robotSin * camLeft;
+    double camY = robotY + robotSin * camForward + robotCos * camLeft;
+    double yawCos = Math.cos(robotYaw + camYaw);
+    double yawSin = Math.sin(robotYaw + camYaw);
+
+    for (int id = 0; id < AprilTagTable.size(); id++) {
+      if (!AprilTagTable.isValid(id)) continue;
+
+      double dx = AprilTagTable.getX(id) - camX;
+      double dy = AprilTagTable.getY(id) - camY;
+      double dz = AprilTagTable.getZ(id) - camUp;
+      if (dx * dx + dy * dy > TAG_PREDICTION_MAX_DISTANCE * TAG_PREDICTION_MAX_DISTANCE) continue;
+
+      // The tag must face the camera
+      double tagYaw = AprilTagTable.getYaw(id);
+      if (Math.cos(tagYaw) * dx + Math.sin(tagYaw) * dy >= 0) continue;
+
+      // Field -> camera frame (x forward, y left, z up): undo yaw, then pitch
+      double yawX = yawCos * dx + yawSin * dy;
+      double left = -yawSin * dx + yawCos * dy;
+      double forward = camPitchCos * yawX - camPitchSin * dz;
+      double up = camPitchSin * yawX + camPitchCos * dz;
+      if (forward <= 0) continue;
+
+      // Normalized image coordinates, right and up positive, +-1 at the edges of the image
+      double u = -left / forward / tanHalfHorizontalFov;
+      double v = up / forward / tanHalfVerticalFov;
+      if (Math.abs(u) > 1 + TAG_PREDICTION_FOV_MARGIN || Math.abs(v) > 1 + TAG_PREDICTION_FOV_MARGIN) continue;
+
+      visible[id >>> 6] |= 1L << (id & 63);
+      nearestDistance = Math.min(nearestDistance, Math.sqrt(dx * dx + dy * dy + dz * dz));
+
+      double padU = APRILTAG_SIZE / 2 / forward / tanHalfHorizontalFov + TAG_CROP_MARGIN;
+      double padV = APRILTAG_SIZE / 2 / forward / tanHalfVerticalFov + TAG_CROP_MARGIN;
+      xMin = Math.min(xMin, u - padU);
+      xMax = Math.max(xMax, u + padU);
+      yMin = Math.min(yMin, v - padV);
+      yMax = Math.max(yMax, v + padV);
+    }
+
+    if (xMin > xMax) {
+      // Nothing predicted, don't restrict the camera
+      openFully();
+      return;
+    }
+
+    crop[0] = roundDown(xMin);
+    crop[1] = roundUp(xMax);
+    crop[2] = roundDown(yMin);
+    crop[3] = roundUp(yMax);
+  }
+
+
+  /** Sets {@link #visible} to every tag and {@link #crop} to the whole image. */
+  private void openFully() {
+    for (int id = 0; id < AprilTagTable.size(); id++) {
+      if (AprilTagTable.isValid(id)) visible[id >>> 6] |= 1L << (id & 63);
+    }
+    crop[0] = crop[2] = -1;
+    crop[1] = crop[3] = 1;
+  }
+
+
+  /**
+   * Returns the distance from the camera to the nearest tag predicted visible by the last {@link #update(Pose2d, double)}.
+   *
+   * @return The distance in m, or positive infinity if no tag is predicted or the pose is not trusted.
+   */
+  public double getNearestTagDistance() {
+    return nearestDistance;
+  }
+
+
+  /**
+   * Returns the name of the Limelight this predicts for.
+   *
+   * @return The Limelight name.
+   */
+  public String getLimelightName() {
+    return limelightName;
+  }
+
+
+  private int[] visibleIds() {
+    int count = 0;
+    for (long word : visible) count += Long.bitCount(word);
+
+    int[] ids = new int[count];
+    int i = 0;
+    for (int id = 0; id < AprilTagTable.size(); id++) {
+      if ((visible[id >>> 6] & (1L << (id & 63))) != 0) ids[i++] = id;
+    }
+    return ids;
+  }
+
+
+  private static double roundDown(double value) {
+    return Math.max(-1, Math.floor(value / TAG_CROP_STEP) * TAG_CROP_STEP);
+  }
+
+
+  private static double roundUp(double value) {
+    return Math.min(1, Math.ceil(value / TAG_CROP_STEP) * TAG_CROP_STEP);
+  }
+}
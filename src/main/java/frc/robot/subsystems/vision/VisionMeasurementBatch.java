@@ -0,0 +1,114 @@
+// Copyright (c) FIRST and other WPILib contributors.
+// Open Source Software; you can modify and/or share it under the terms of
+// the WPILib BSD license file in the root directory of this project.
+
+package frc.robot.subsystems.vision;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.function.Consumer;
+
+import edu.wpi.first.wpilibj.DriverStation;
+
+
+/**
+ * Collects the vision measurements from every camera for one loop and applies them in a single pass ordered by
+ * capture timestamp.
+ *
+ * <p>Feeding the pose estimator in timestamp order means each measurement only replays the odometry after it once,
+ * instead of the estimator rewinding back and forth between cameras. Frames a camera has already delivered (same or
+ * older capture timestamp than the newest one applied from that camera) are rejected as duplicates.
+ */
+public class VisionMeasurementBatch {
+  private static final Comparator<VisionPoseEstimate> BY_TIMESTAMP = Comparator.comparingDouble(VisionPoseEstimate::timestampSeconds);
+
+  private final ArrayList<VisionPoseEstimate> pending;
+
+  // Newest capture timestamp applied per camera, looked up by name
+  private final String[] cameraNames;
+  private final double[] lastTimestamps;
+  private int cameraCount = 0;
+  private long droppedMeasurements = 0;
+
+
+  /**
+   * Creates a new VisionMeasurementBatch.
+   *
+   * @param initialCapacity Number of measurements expected per loop across all cameras.
+   * @param maxCameras      Number of distinct cameras tracked for duplicate rejection, measurements from any further
+   *                        camera are dropped.
+   */
+  public VisionMeasurementBatch(int initialCapacity, int maxCameras) {
+    pending = new ArrayList<>(initialCapacity);
+    cameraNames = new String[maxCameras];
+    lastTimestamps = new double[maxCameras];
+  }
+
+
+  /**
+   * Adds a measurement to the current batch.
+   *
+   * @param estimate The measurement.
+   */
+  public void add(VisionPoseEstimate estimate) {
+    pending.add(estimate);
+  }
+
+
+  /**
+   * Sorts the batch by capture timestamp, hands every non-duplicate measurement to the consumer in that order, and
+   * empties the batch.
+   *
+   * @param consumer Receives each accepted measurement, oldest first.
+   * @return The number of measurements applied.
+   */
+  public int apply(Consumer<VisionPoseEstimate> consumer) {
+    if (pending.isEmpty()) return 0;
+    pending.sort(BY_TIMESTAMP);
+
+    int applied = 0;
+    for (int i = 0; i < pending.size(); i++) {
+      VisionPoseEstimate estimate = pending.get(i);
+      int camera = indexOf(estimate.cameraName());
+      if (camera < 0) {
+        if (droppedMeasurements++ == 0) {
+          DriverStation.reportWarning("VisionMeasurementBatch: more than " + cameraNames.length + " cameras, dropping measurements from " + estimate.cameraName(), false);
+        }
+        continue;
+      }
+      if (estimate.timestampSeconds() <= lastTimestamps[camera]) continue;
+
+      lastTimestamps[camera] = estimate.timestampSeconds();
+      consumer.accept(estimate);
+      applied++;
+    }
+
+    pending.clear();
+    return applied;
+  }
+
+
+  /**
+   * Returns how many measurements were dropped because they came from more cameras than the batch tracks.
+   *
+   * @return The number of dropped measurements since startup.
+   */
+  public long getDroppedMeasurements() {
+    return droppedMeasurements;
+  }
+
+
+  /**
+   * Returns the slot tracking the given camera, adding it if this is its first measurement.
+   */
+  private int indexOf(String cameraName) {
+    for (int i = 0; i < cameraCount; i++) {
+      if (cameraNames[i].equals(cameraName)) return i;
+    }
+    if (cameraCount == cameraNames.length) return -1;
+
+    cameraNames[cameraCount] = cameraName;
+    lastTimestamps[cameraCount] = Double.NEGATIVE_INFINITY;
+    return cameraCount++;
+  }
+}
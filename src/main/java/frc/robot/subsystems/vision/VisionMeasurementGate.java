@@ -0,0 +1,183 @@
+// Copyright (c) FIRST and other WPILib contributors.
+// Open Source Software; you can modify and/or share it under the terms of
+// the WPILib BSD license file in the root directory of this project.
+
+package frc.robot.subsystems.vision;
+
+import static frc.robot.Constants.VisionConstants.*;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import edu.wpi.first.math.MathUtil;
+import edu.wpi.first.math.Matrix;
+import edu.wpi.first.math.geometry.Pose2d;
+import edu.wpi.first.math.numbers.N1;
+import edu.wpi.first.math.numbers.N3;
+import edu.wpi.first.networktables.DoublePublisher;
+import edu.wpi.first.networktables.IntegerPublisher;
+import edu.wpi.first.networktables.NetworkTable;
+import edu.wpi.first.networktables.NetworkTableInstance;
+
+
+/**
+ * Rejects or down-weights vision pose estimates that disagree with odometry.
+ *
+ * <p>Each estimate is compared with the robot pose at its capture timestamp. The squared Mahalanobis distance of the
+ * difference is computed with a diagonal covariance: the vision standard deviations plus an odometry uncertainty that
+ * grows while no vision has been accepted, up to {@link frc.robot.Constants.VisionConstants#VISION_GATE_MAX_DRIFT_TIME}.
+ * Estimates within {@link frc.robot.Constants.VisionConstants#VISION_GATE_ACCEPT_CHI2} pass unchanged, those beyond
+ * {@link frc.robot.Constants.VisionConstants#VISION_GATE_REJECT_CHI2} are rejected, and those in between have their
+ * standard deviations inflated. Counts per camera are published under "VisionGate".
+ *
+ * <p>The odometry pose can be arbitrarily wrong before vision has corrected it, e.g. at (0, 0) after boot or
+ * {@link #reset()}, or after {@link frc.robot.Constants.VisionConstants#VISION_GATE_MAX_CONSECUTIVE_REJECTIONS}
+ * rejections in a row. Each accepted estimate only moves the pose part of the way, so until an estimate agrees with
+ * the pose within {@link frc.robot.Constants.VisionConstants#VISION_GATE_ACCEPT_CHI2} without any allowance for drift,
+ * multi-tag estimates bypass the gate and the drift time is no longer capped. The pose converges over a few frames
+ * instead of the gate locking itself out.
+ */
+public class VisionMeasurementGate {
+  private final NetworkTable table = NetworkTableInstance.getDefault().getTable("VisionGate");
+  private final Map<String, CameraStats> stats = new HashMap<>();
+
+  private double lastAcceptedTimestamp = Double.NEGATIVE_INFINITY;
+  private boolean converged = false;
+  private double divergedTimestamp = Double.NaN;
+  private int consecutiveRejections = 0;
+
+
+  /** Forgets that vision agreed with the pose, e.g. after the pose was reset, so multi-tag estimates bypass the gate. */
+  public void reset() {
+    lastAcceptedTimestamp = Double.NEGATIVE_INFINITY;
+    converged = false;
+    divergedTimestamp = Double.NaN;
+    consecutiveRejections = 0;
+  }
+
+
+  /**
+   * Checks an estimate against the robot pose at its capture time.
+   *
+   * @param estimate      The vision estimate.
+   * @param predictedPose The robot pose at the estimate's timestamp, or null if unknown (the estimate is accepted).
+   * @return The standard deviations to apply the estimate with, or null if it should be rejected.
+   */
+  public Matrix<N3, N1> check(VisionPoseEstimate estimate, Pose2d predictedPose) {
+    CameraStats cameraStats = getStats(estimate.cameraName());
+    Matrix<N3, N1> stdDevs = estimate.stdDevs();
+
+    // Nothing to check against
+    if (predictedPose == null) {
+      accept(estimate, cameraStats, 0);
+      return stdDevs;
+    }
+
+    double dx = estimate.pose().getX() - predictedPose.getX();
+    double dy = estimate.pose().getY() - predictedPose.getY();
+    double dTheta = MathUtil.angleModulus(estimate.pose().getRotation().getRadians() - predictedPose.getRotation().getRadians());
+
+    if (!converged) {
+      // The pose is trusted again once vision agrees with it even without drift
+      if (distanceSq(dx, dy, dTheta, stdDevs, 0) <= VISION_GATE_ACCEPT_CHI2) {
+        converged = true;
+        consecutiveRejections = 0;
+      } else if (estimate.tagCount() >= 2) {
+        // Several tags pin down the robot's pose, let them pull the pose in
+        accept(estimate, cameraStats, 0);
+        return stdDevs;
+      }
+    }
+
+    // Odometry uncertainty grows with time since vision last corrected it, without bound while the pose is not trusted
+    double sinceAccepted;
+    if (converged) {
+      sinceAccepted = Math.min(estimate.timestampSeconds() - lastAcceptedTimestamp, VISION_GATE_MAX_DRIFT_TIME);
+    } else {
+      if (Double.isNaN(divergedTimestamp)) divergedTimestamp = estimate.timestampSeconds();
+      sinceAccepted = VISION_GATE_MAX_DRIFT_TIME + Math.max(estimate.timestampSeconds() - divergedTimestamp, 0);
+    }
+    double distanceSq = distanceSq(dx, dy, dTheta, stdDevs, sinceAccepted);
+
+    if (distanceSq > VISION_GATE_REJECT_CHI2) {
+      if (++consecutiveRejections >= VISION_GATE_MAX_CONSECUTIVE_REJECTIONS && converged) {
+        converged = false;
+        divergedTimestamp = estimate.timestampSeconds();
+      }
+      cameraStats.rejected++;
+      cameraStats.rejectedPub.set(cameraStats.rejected);
+      cameraStats.distancePub.set(distanceSq);
+      return null;
+    }
+
+    if (distanceSq > VISION_GATE_ACCEPT_CHI2) {
+      // Inflate the std devs so that the estimate sits right at the accept threshold
+      cameraStats.downweighted++;
+      cameraStats.downweightedPub.set(cameraStats.downweighted);
+      stdDevs = stdDevs.times(Math.sqrt(distanceSq / VISION_GATE_ACCEPT_CHI2));
+    }
+
+    accept(estimate, cameraStats, distanceSq);
+    return stdDevs;
+  }
+
+
+  private void accept(VisionPoseEstimate estimate, CameraStats cameraStats, double distanceSq) {
+    lastAcceptedTimestamp = Math.max(lastAcceptedTimestamp, estimate.timestampSeconds());
+    consecutiveRejections = 0;
+    cameraStats.accepted++;
+    cameraStats.acceptedPub.set(cameraStats.accepted);
+    cameraStats.distancePub.set(distanceSq);
+  }
+
+
+  /**
+   * Returns whether vision currently agrees with the pose, i.e. estimates are gated normally.
+   *
+   * @return False after boot, a reset or a run of rejections, until an estimate agrees with the pose.
+   */
+  public boolean isConverged() {
+    return converged;
+  }
+
+
+  /** Squared Mahalanobis distance of a pose difference, with the odometry uncertainty after drifting for a while. */
+  private static double distanceSq(double dx, double dy, double dTheta, Matrix<N3, N1> stdDevs, double driftSeconds) {
+    double odomTranslationVar = square(ODOMETRY_STD_DEVS.get(0, 0)) + square(ODOMETRY_DRIFT_PER_SECOND.get(0, 0) * driftSeconds);
+    double odomRotationVar = square(ODOMETRY_STD_DEVS.get(2, 0)) + square(ODOMETRY_DRIFT_PER_SECOND.get(2, 0) * driftSeconds);
+    return
+      dx * dx / (odomTranslationVar + square(stdDevs.get(0, 0))) +
+      dy * dy / (odomTranslationVar + square(stdDevs.get(1, 0))) +
+      dTheta * dTheta / (odomRotationVar + square(stdDevs.get(2, 0)));
+  }
+
+
+  private CameraStats getStats(String cameraName) {
+    CameraStats cameraStats = stats.get(cameraName);
+    if (cameraStats == null) {
+      cameraStats = new CameraStats(table.getSubTable(cameraName));
+      stats.put(cameraName, cameraStats);
+    }
+    return cameraStats;
+  }
+
+
+  private static double square(double value) {
+    return value * value;
+  }
+
+
+  /** Gate counters and their publishers for one camera. */
+  private static class CameraStats {
+    long accepted, downweighted, rejected;
+    final IntegerPublisher acceptedPub, downweightedPub, rejectedPub;
+    final DoublePublisher distancePub;
+
+    CameraStats(NetworkTable cameraTable) {
+      acceptedPub = cameraTable.getIntegerTopic("accepted").publish();
+      downweightedPub = cameraTable.getIntegerTopic("downweighted").publish();
+      rejectedPub = cameraTable.getIntegerTopic("rejected").publish();
+      distancePub = cameraTable.getDoubleTopic("last mahalanobis sq").publish();
+    }
+  }
+}
@@ -0,0 +1,200 @@
+// Copyright (c) FIRST and other WPILib contributors.
+// Open Source Software; you can modify and/or share it under the terms of
+// the WPILib BSD license file in the root directory of this project.
+
+package frc.robot.subsystems.vision;
+
+import static frc.robot.Constants.VisionConstants.*;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import com.pathplanner.lib.pathfinding.Pathfinding;
+
+import edu.wpi.first.math.Pair;
+import edu.wpi.first.math.geometry.Transform3d;
+import edu.wpi.first.math.geometry.Translation2d;
+import edu.wpi.first.networktables.DoubleArrayEntry;
+import frc.robot.subsystems.PoseHistory;
+import frc.robot.utils.LimelightHelpers;
+
+
+/**
+ * Turns object detections (other robots, game pieces) into temporary obstacles for the pathfinder.
+ *
+ * <p>Each detection's angles are projected onto the floor from the camera's mounting and the robot pose when the frame
+ * was captured, giving a field position. Detections close to a known obstacle refresh it, others add a new one, and
+ * obstacles that are not seen again within {@link frc.robot.Constants.VisionConstants#DYNAMIC_OBSTACLE_TIMEOUT}
+ * expire. Whenever an obstacle is added, expires or moves to another
+ * {@link frc.robot.Constants.VisionConstants#DYNAMIC_OBSTACLE_CELL_SIZE} cell, a square of
+ * {@link frc.robot.Constants.VisionConstants#DYNAMIC_OBSTACLE_SIZE} around each is sent to
+ * {@link Pathfinding#setDynamicObstacles}.
+ *
+ * <p>Limelight neural detector results are read in {@link #update}; other sources, such as a PhotonVision object
+ * detection pipeline, can feed {@link #addDetection} directly.
+ */
+public class VisionObstacleTracker {
+  private final List<LimelightCamera> limelights;
+  private final DoubleArrayEntry[] detectionEntries;
+  private final long[] lastChanges;
+  private final double[] detections = new double[MAX_DYNAMIC_OBSTACLES * LimelightHelpers.RAW_DETECTION_STRIDE];
+  private final PoseHistory.Sample robotAtCapture = new PoseHistory.Sample();
+
+  private final double[] obstacleX = new double[MAX_DYNAMIC_OBSTACLES];
+  private final double[] obstacleY = new double[MAX_DYNAMIC_OBSTACLES];
+  private final double[] obstacleExpiry = new double[MAX_DYNAMIC_OBSTACLES];
+  private int obstacleCount = 0;
+  private boolean changed = false;
+
+
+  /**
+   * Creates a new VisionObstacleTracker.
+   *
+   * @param limelights Limelights whose neural detector results are read.
+   */
+  public VisionObstacleTracker(List<LimelightCamera> limelights) {
+    this.limelights = limelights;
+    this.detectionEntries = new DoubleArrayEntry[limelights.size()];
+    this.lastChanges = new long[limelights.size()];
+    for (int i = 0; i < limelights.size(); i++) {
+      detectionEntries[i] = LimelightHelpers.getLimelightDoubleArrayEntry(limelights.get(i).getCameraName(), "rawdetections");
+    }
+  }
+
+
+  /**
+   * Reads new Limelight detections, expires old obstacles and sends the obstacles to the pathfinder if they changed.
+   *
+   * @param history          History of the robot pose, to place detections by where the robot was at capture.
+   * @param robotPosition    The current robot position.
+   * @param timestampSeconds The current time, in the FPGA timebase.
+   */
+  public void update(PoseHistory history, Translation2d robotPosition, double timestampSeconds) {
+    for (int i = 0; i < limelights.size(); i++) {
+      // Each frame is only read once, so a stale frame does not keep its obstacles alive
+      long lastChange = detectionEntries[i].getLastChange();
+      if (lastChange == lastChanges[i]) continue;
+      lastChanges[i] = lastChange;
+
+      LimelightCamera limelight = limelights.get(i);
+      String name = limelight.getCameraName();
+      int count = LimelightHelpers.getRawDetections(name, detections);
+      if (count == 0) continue;
+
+      double latency = LimelightHelpers.getLatency_Pipeline(name) + LimelightHelpers.getLatency_Capture(name);
+      double captureTimestamp = lastChange / 1e6 - latency / 1e3;
+      if (!history.sample(captureTimestamp, robotAtCapture)) continue;
+
+      for (int j = 0; j < count; j++) {
+        int base = j * LimelightHelpers.RAW_DETECTION_STRIDE;
+        addDetection(limelight.getBotToCam(), detections[base + 1], detections[base + 2], robotAtCapture, timestampSeconds);
+      }
+    }
+
+    for (int i = obstacleCount - 1; i >= 0; i--) {
+      if (obstacleExpiry[i] < timestampSeconds) {
+        removeObstacle(i);
+        changed = true;
+      }
+    }
+
+    if (changed) {
+      changed = false;
+      List<Pair<Translation2d, Translation2d>> boxes = new ArrayList<>(obstacleCount);
+      double half = DYNAMIC_OBSTACLE_SIZE / 2;
+      for (int i = 0; i < obstacleCount; i++) {
+        boxes.add(Pair.of(
+          new Translation2d(obstacleX[i] - half, obstacleY[i] - half),
+          new Translation2d(obstacleX[i] + half, obstacleY[i] + half)
+        ));
+      }
+      Pathfinding.setDynamicObstacles(boxes, robotPosition);
+    }
+  }
+
+
+  /**
+   * Adds a detected object, or refreshes the obstacle it belongs to. Objects above the camera's horizon or beyond
+   * {@link frc.robot.Constants.VisionConstants#DETECTION_MAX_DISTANCE} are ignored.
+   *
+   * @param botToCam         Transform from the robot's center of rotation to the camera, roll is ignored.
+   * @param txDegrees        Horizontal angle to the object from the image center, positive right.
+   * @param tyDegrees        Vertical angle to the object from the image center, positive up.
+   * @param robotAtCapture   Robot pose when the frame was captured.
+   * @param timestampSeconds The current time, in the FPGA timebase.
+   */
+  public void addDetection(Transform3d botToCam, double txDegrees, double tyDegrees, PoseHistory.Sample robotAtCapture, double timestampSeconds) {
+    // Ray to the object in the camera frame (x forward, y left, z up), then undo the camera pitch
+    double left = -Math.tan(Math.toRadians(txDegrees));
+    double up = Math.tan(Math.toRadians(tyDegrees));
+    double pitchCos = Math.cos(botToCam.getRotation().getY());
+    double pitchSin = Math.sin(botToCam.getRotation().getY());
+    double forward = pitchCos + pitchSin * up;
+    double down = pitchSin - pitchCos * up;
+
+    // Scale the ray so it ends at the height of the object
+    double drop = botToCam.getZ() - DETECTION_TARGET_HEIGHT;
+    if (down <= 0 || drop <= 0) return;
+    double scale = drop / down;
+    forward *= scale;
+    left *= scale;
+    if (Math.hypot(forward, left) > DETECTION_MAX_DISTANCE) return;
+
+    // Camera frame -> field
+    double robotCos = Math.cos(robotAtCapture.theta);
+    double robotSin = Math.sin(robotAtCapture.theta);
+    double camX = robotAtCapture.x + robotCos * botToCam.getX() - robotSin * botToCam.getY();
+    double camY = robotAtCapture.y + robotSin * botToCam.getX() + robotCos * botToCam.getY();
+    double yaw = robotAtCapture.theta + botToCam.getRotation().getZ();
+    double x = camX + Math.cos(yaw) * forward - Math.sin(yaw) * left;
+    double y = camY + Math.sin(yaw) * forward + Math.cos(yaw) * left;
+
+    // Refresh the nearest obstacle if this is the same object, otherwise add it, replacing the stalest if full
+    int index = -1;
+    double nearest = DYNAMIC_OBSTACLE_MERGE_DISTANCE;
+    for (int i = 0; i < obstacleCount; i++) {
+      double distance = Math.hypot(obstacleX[i] - x, obstacleY[i] - y);
+      if (distance <= nearest) {
+        nearest = distance;
+        index = i;
+      }
+    }
+    if (index >= 0) {
+      // Moving within a cell doesn't change the path, and refreshing alone doesn't need a replan
+      if (cellOf(obstacleX[index]) != cellOf(x) || cellOf(obstacleY[index]) != cellOf(y)) changed = true;
+    } else {
+      changed = true;
+      if (obstacleCount < MAX_DYNAMIC_OBSTACLES) {
+        index = obstacleCount++;
+      } else {
+        index = 0;
+        for (int i = 1; i < obstacleCount; i++) {
+          if (obstacleExpiry[i] < obstacleExpiry[index]) index = i;
+        }
+      }
+    }
+
+    obstacleX[index] = x;
+    obstacleY[index] = y;
+    obstacleExpiry[index] = timestampSeconds + DYNAMIC_OBSTACLE_TIMEOUT;
+  }
+
+
+  /** @return The number of obstacles currently tracked. */
+  public int getObstacleCount() {
+    return obstacleCount;
+  }
+
+
+  private static long cellOf(double coordinate) {
+    return (long) Math.floor(coordinate / DYNAMIC_OBSTACLE_CELL_SIZE);
+  }
+
+
+  private void removeObstacle(int i) {
+    int last = --obstacleCount;
+    obstacleX[i] = obstacleX[last];
+    obstacleY[i] = obstacleY[last];
+    obstacleExpiry[i] = obstacleExpiry[last];
+  }
+}
@@ -0,0 +1,141 @@
+// Copyright (c) FIRST and other WPILib contributors.
+// Open Source Software; you can modify and/or share it under the terms of
+// the WPILib BSD license file in the root directory of this project.
+
+package frc.robot.subsystems.vision;
+
+import static frc.robot.Constants.VisionConstants.PIPELINE_RESEND_PERIOD;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import org.photonvision.PhotonCamera;
+
+import edu.wpi.first.wpilibj.Timer;
+import frc.robot.Constants.VisionConstants.VisionPipelineInfo;
+
+
+/**
+ * Tracks which pipeline a PhotonVision camera should run and which one it has confirmed running.
+ *
+ * <p>Commands request pipelines with a priority, and the highest priority request wins (the newest among equals).
+ * Without requests the default pipeline is used. The index is only sent to the camera when the desired pipeline
+ * changes, or again periodically while the camera has not confirmed it. Until the camera reports the desired pipeline,
+ * and for frames captured before that, {@link #accepts(double)} is false so frames from the previous pipeline are
+ * discarded.
+ *
+ * <p>Requests and {@link #periodic()} are for the main robot thread; {@link #accepts(double)} and
+ * {@link #getActivePipeline()} may be called from any thread.
+ */
+public class VisionPipelineManager {
+  private final PhotonCamera camera;
+  private final VisionPipelineInfo defaultPipeline;
+
+  private final Map<Object, Request> requests = new HashMap<>();
+  private long requestCount = 0;
+
+  private int sentIndex = -1;
+  private double sentTimestamp = 0;
+
+  // Written by the main thread, confirmedSince before confirmed, so readers of confirmed see a matching timestamp
+  private volatile VisionPipelineInfo confirmed = null;
+  private volatile double confirmedSince = Double.POSITIVE_INFINITY;
+
+
+  /**
+   * Creates a new VisionPipelineManager.
+   *
+   * @param camera          The camera to manage.
+   * @param defaultPipeline Pipeline used while nothing else is requested.
+   */
+  public VisionPipelineManager(PhotonCamera camera, VisionPipelineInfo defaultPipeline) {
+    this.camera = camera;
+    this.defaultPipeline = defaultPipeline;
+  }
+
+
+  /**
+   * Requests a pipeline, replacing any earlier request from the same requester.
+   *
+   * @param requester Owner of the request, usually the requesting command.
+   * @param pipeline  The pipeline.
+   * @param priority  Priority of the request, higher wins.
+   */
+  public void request(Object requester, VisionPipelineInfo pipeline, int priority) {
+    requests.put(requester, new Request(pipeline, priority, requestCount++));
+  }
+
+
+  /**
+   * Withdraws the request of the given requester, if any.
+   *
+   * @param requester Owner of the request.
+   */
+  public void release(Object requester) {
+    requests.remove(requester);
+  }
+
+
+  /**
+   * Sends the desired pipeline if needed and checks whether the camera has confirmed it. Should be called every loop.
+   */
+  public void periodic() {
+    VisionPipelineInfo desired = getDesiredPipeline();
+    double now = Timer.getFPGATimestamp();
+
+    boolean isConfirmed = camera.getPipelineIndex() == desired.pipelineIndex;
+    if (desired.pipelineIndex != sentIndex || (!isConfirmed && now - sentTimestamp > PIPELINE_RESEND_PERIOD)) {
+      camera.setPipelineIndex(desired.pipelineIndex);
+      sentIndex = desired.pipelineIndex;
+      sentTimestamp = now;
+    }
+
+    if (!isConfirmed) {
+      confirmed = null;
+    } else if (confirmed != desired) {
+      confirmedSince = now;
+      confirmed = desired;
+    }
+  }
+
+
+  /**
+   * Returns the pipeline that should be running: the highest priority request, or the default.
+   *
+   * @return The desired {@link VisionPipelineInfo}.
+   */
+  public VisionPipelineInfo getDesiredPipeline() {
+    Request best = null;
+    for (Request request : requests.values()) {
+      if (best == null || request.priority > best.priority || (request.priority == best.priority && request.order > best.order)) {
+        best = request;
+      }
+    }
+    return best != null ? best.pipeline : defaultPipeline;
+  }
+
+
+  /**
+   * Returns the desired pipeline if the camera has confirmed running it.
+   *
+   * @return The confirmed {@link VisionPipelineInfo}, or null while a switch is pending.
+   */
+  public VisionPipelineInfo getActivePipeline() {
+    return confirmed;
+  }
+
+
+  /**
+   * Returns whether a frame should be trusted, i.e. whether it was captured after the camera confirmed the desired
+   * pipeline.
+   *
+   * @param captureTimestamp Capture timestamp of the frame, in the FPGA timebase.
+   * @return true if the frame comes from the desired pipeline.
+   */
+  public boolean accepts(double captureTimestamp) {
+    return confirmed != null && captureTimestamp >= confirmedSince;
+  }
+
+
+  private record Request(VisionPipelineInfo pipeline, int priority, long order) {}
+}
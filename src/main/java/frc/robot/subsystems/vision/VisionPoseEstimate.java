@@ -0,0 +1,32 @@
+// Copyright (c) FIRST and other WPILib contributors.
+// Open Source Software; you can modify and/or share it under the terms of
+// the WPILib BSD license file in the root directory of this project.
+
+package frc.robot.subsystems.vision;
+
+import edu.wpi.first.math.Matrix;
+import edu.wpi.first.math.geometry.Pose2d;
+import edu.wpi.first.math.numbers.N1;
+import edu.wpi.first.math.numbers.N3;
+
+
+/**
+ * An immutable robot pose estimate produced from a single camera frame.
+ *
+ * @param cameraName       Name of the camera that saw the frame.
+ * @param pose             Estimated field-relative robot pose.
+ * @param timestampSeconds Capture timestamp of the frame, in the FPGA timebase.
+ * @param stdDevs          Standard deviations (x, y, theta) to trust the estimate with.
+ * @param tagCount         Number of AprilTags used for the estimate.
+ * @param avgTagDist       Average distance from the estimated pose to the tags used, in m.
+ * @param ambiguity        Average pose ambiguity of the tags used, 0 if unknown.
+ */
+public record VisionPoseEstimate(
+  String cameraName,
+  Pose2d pose,
+  double timestampSeconds,
+  Matrix<N3, N1> stdDevs,
+  int tagCount,
+  double avgTagDist,
+  double ambiguity
+) {}
@@ -0,0 +1,65 @@
+// Copyright (c) FIRST and other WPILib contributors.
+// Open Source Software; you can modify and/or share it under the terms of
+// the WPILib BSD license file in the root directory of this project.
+
+package frc.robot.subsystems.vision;
+
+import static frc.robot.Constants.VisionConstants.kMultiTagStdDevs;
+import static frc.robot.Constants.VisionConstants.kSingleTagStdDevs;
+
+import edu.wpi.first.math.Matrix;
+import edu.wpi.first.math.VecBuilder;
+import edu.wpi.first.math.geometry.Transform3d;
+import edu.wpi.first.math.numbers.N1;
+import edu.wpi.first.math.numbers.N3;
+
+
+/**
+ * A camera that produces robot pose estimates, independent of the vision backend behind it.
+ */
+public interface VisionSource {
+  /**
+   * Returns the name of the camera, as used in {@link VisionPoseEstimate#cameraName()}.
+   *
+   * @return The camera name.
+   */
+  String getCameraName();
+
+
+  /**
+   * Returns the transform from the robot's center of rotation to the camera.
+   *
+   * @return {@link Transform3d} from the robot's center of rotation to the camera.
+   */
+  Transform3d getBotToCam();
+
+
+  /**
+   * Removes and returns the oldest pose estimate not yet polled. Should be drained every loop from the main robot
+   * thread.
+   *
+   * @return The oldest unread {@link VisionPoseEstimate}, or null if there are none.
+   */
+  VisionPoseEstimate pollEstimate();
+
+
+  /**
+   * Calculates standard deviations for an estimate. This algorithm is a heuristic that creates dynamic standard
+   * deviations based on number of tags and distance from the tags.
+   *
+   * @param numTags Number of known tags used for the estimate.
+   * @param avgDist Average distance to those tags, in m.
+   * @return Standard deviations (x, y, theta) of the estimate.
+   */
+  static Matrix<N3, N1> calculateStdDevs(int numTags, double avgDist) {
+    // No tags visible. Default to single-tag std devs
+    if (numTags == 0) return kSingleTagStdDevs;
+
+    // A single far tag is not trusted at all
+    if (numTags == 1 && avgDist > 4) return VecBuilder.fill(Double.MAX_VALUE, Double.MAX_VALUE, Double.MAX_VALUE);
+
+    // Decrease std devs if multiple targets are visible, increase them based on (average) distance
+    var estStdDevs = numTags > 1 ? kMultiTagStdDevs : kSingleTagStdDevs;
+    return estStdDevs.times(1 + (avgDist * avgDist / 30));
+  }
+}
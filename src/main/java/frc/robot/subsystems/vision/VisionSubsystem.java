@@ -8,21 +8,38 @@ import java.util.ArrayList;
 import java.util.List;
 
 import edu.wpi.first.wpilibj2.command.SubsystemBase;
+import frc.robot.Constants.VisionConstants.VisionBackend;
 import frc.robot.Constants.VisionConstants.VisionCameraInfo;
 
 
 /**
  * A subsystem that interfaces with the PhotonVision camera and processes vision data to estimate the
  * robot's pose on the field.
+ *
+ * <p>The cameras are built from {@link VisionCameraInfo}, whose backend selects the {@link VisionSource}
+ * implementation, so PhotonVision and Limelight cameras can be mixed per robot.
  */
 public class VisionSubsystem extends SubsystemBase {
   public final List<PVCamera> cameras = new ArrayList<>();
+  private final List<LimelightCamera> limelights = new ArrayList<>();
+  private final List<VisionSource> sources = new ArrayList<>();
 
 
   /** Creates a new Camera. */
   public VisionSubsystem() {
     for (VisionCameraInfo camInfo : VisionCameraInfo.values()) {
-      cameras.add(new PVCamera(camInfo.camName, camInfo.botToCam));
+      switch (camInfo.backend) {
+        case PHOTONVISION -> {
+          PVCamera camera = new PVCamera(camInfo.camName, camInfo.botToCam);
+          cameras.add(camera);
+          sources.add(camera);
+        }
+        case LIMELIGHT_MEGATAG1, LIMELIGHT_MEGATAG2 -> {
+          LimelightCamera limelight = new LimelightCamera(camInfo.camName, camInfo.botToCam, camInfo.backend == VisionBackend.LIMELIGHT_MEGATAG2);
+          limelights.add(limelight);
+          sources.add(limelight);
+        }
+      }
     }
   }
 
@@ -35,4 +52,24 @@ public class VisionSubsystem extends SubsystemBase {
   public List<PVCamera> getCameras() {
     return cameras;
   }
+
+
+  /**
+   * Returns a list of all Limelight cameras.
+   *
+   * @return A {@link List} containing all {@link LimelightCamera}s.
+   */
+  public List<LimelightCamera> getLimelights() {
+    return limelights;
+  }
+
+
+  /**
+   * Returns every camera that produces pose estimates, regardless of backend.
+   *
+   * @return A {@link List} containing all {@link VisionSource}s.
+   */
+  public List<VisionSource> getSources() {
+    return sources;
+  }
 }
@@ -0,0 +1,385 @@
+// Copyright (c) FIRST and other WPILib contributors.
+// Open Source Software; you can modify and/or share it under the terms of
+// the WPILib BSD license file in the root directory of this project.
+
+package frc.robot.utils;
+
+import java.util.Arrays;
+
+
+/**
+ * An incremental shortest path planner over a {@link NavGrid}, using D* Lite (Koenig and Likhachev).
+ *
+ * <p>The grid is 8-connected with costs of 1 and sqrt(2) cells, and diagonal moves may not cut the corner of a blocked
+ * cell. On top of the navgrid's static obstacles, cells can be temporarily blocked, e.g. where vision sees another
+ * robot. D* Lite searches backwards from the goal, so when obstacles change or the robot moves towards the goal only
+ * the part of the search affected by the change is repaired, instead of planning again from scratch. Changing the
+ * goal does start over.
+ *
+ * <p>All state lives in primitive arrays indexed by cell (row * columns + column), with an indexed binary heap as the
+ * priority queue, so planning does not allocate. Not thread safe; use from a single planning thread.
+ */
+public class DStarLite {
+  private static final double SQRT2 = Math.sqrt(2);
+  private static final double INF = Double.POSITIVE_INFINITY;
+  private static final double KEY_EPSILON = 1e-9;
+
+  // Neighbor offsets, the first four are orthogonal
+  private static final int[] NEIGHBOR_ROWS = {-1, 1, 0, 0, -1, -1, 1, 1};
+  private static final int[] NEIGHBOR_COLUMNS = {0, 0, -1, 1, -1, 1, -1, 1};
+
+  private final NavGrid grid;
+  private final int rows, columns;
+  private final long[] dynamicObstacles;
+
+  private final double[] g, rhs;
+  private final double[] key1, key2;
+  private final int[] heap, heapIndex;
+  private int heapSize = 0;
+
+  private int start = -1, goal = -1, lastStart = -1;
+  private double km = 0;
+  private boolean initialized = false;
+  private int expandedNodes = 0;
+
+
+  /**
+   * Creates a new DStarLite.
+   *
+   * @param grid The static navgrid.
+   */
+  public DStarLite(NavGrid grid) {
+    this.grid = grid;
+    this.rows = grid.getRows();
+    this.columns = grid.getColumns();
+
+    int size = rows * columns;
+    dynamicObstacles = new long[(size + 63) >>> 6];
+    g = new double[size];
+    rhs = new double[size];
+    key1 = new double[size];
+    key2 = new double[size];
+    heap = new int[size];
+    heapIndex = new int[size];
+  }
+
+
+  /**
+   * Sets the start cell, where the robot is. Moving it keeps the search.
+   *
+   * @param row    Row of the start.
+   * @param column Column of the start.
+   */
+  public void setStart(int row, int column) {
+    int cell = row * columns + column;
+    if (cell == start) return;
+
+    start = cell;
+    if (initialized) {
+      // Keys in the queue were computed against the previous start, raise new ones by how far it moved instead of
+      // recomputing them all
+      km += heuristic(lastStart, start);
+      lastStart = start;
+    }
+  }
+
+
+  /**
+   * Sets the goal cell. This discards the search, the next {@link #plan()} starts from scratch.
+   *
+   * @param row    Row of the goal.
+   * @param column Column of the goal.
+   */
+  public void setGoal(int row, int column) {
+    goal = row * columns + column;
+    initialized = false;
+  }
+
+
+  /**
+   * Blocks or unblocks a cell in addition to the navgrid's obstacles.
+   *
+   * @param row     Row of the cell.
+   * @param column  Column of the cell.
+   * @param blocked Whether the cell is blocked.
+   */
+  public void setDynamicObstacle(int row, int column, boolean blocked) {
+    if (!grid.contains(row, column)) return;
+
+    int cell = row * columns + column;
+    boolean wasBlocked = (dynamicObstacles[cell >>> 6] & (1L << (cell & 63))) != 0;
+    if (blocked == wasBlocked) return;
+
+    dynamicObstacles[cell >>> 6] ^= 1L << (cell & 63);
+    cellChanged(cell);
+  }
+
+
+  /**
+   * Replaces all dynamic obstacles, only updating the cells that changed.
+   *
+   * @param cells Bitset of blocked cells, indexed row * columns + column.
+   * @return The number of cells that changed.
+   */
+  public int setDynamicObstacles(long[] cells) {
+    int changed = 0;
+    for (int word = 0; word < dynamicObstacles.length; word++) {
+      long diff = dynamicObstacles[word] ^ cells[word];
+      dynamicObstacles[word] = cells[word];
+      while (diff != 0) {
+        int cell = (word << 6) + Long.numberOfTrailingZeros(diff);
+        diff &= diff - 1;
+        cellChanged(cell);
+        changed++;
+      }
+    }
+    return changed;
+  }
+
+
+  /** @return Whether a cell is blocked by the navgrid or a dynamic obstacle, cells outside the grid are. */
+  public boolean isBlocked(int row, int column) {
+    if (grid.isObstacle(row, column)) return true;
+    int cell = row * columns + column;
+    return (dynamicObstacles[cell >>> 6] & (1L << (cell & 63))) != 0;
+  }
+
+
+  /**
+   * Computes the shortest path from the start to the goal, repairing the previous search where possible.
+   *
+   * @return Whether a path exists.
+   * @throws IllegalStateException If the start or goal is not set.
+   */
+  public boolean plan() {
+    if (start < 0 || goal < 0) throw new IllegalStateException("DStarLite: start and goal must be set before planning");
+
+    if (!initialized) initialize();
+
+    expandedNodes = 0;
+    while (heapSize > 0) {
+      int u = heap[0];
+      // Also expand ties with the start's key (up to rounding, costs are sums of 1 and sqrt(2) in different orders),
+      // so no cell next to the path is left with a stale, too low cost that would lead getPath() astray
+      if (key1[u] > calculateKey1(start) + KEY_EPSILON && rhs[start] == g[start]) break;
+
+      double newKey1 = calculateKey1(u), newKey2 = calculateKey2(u);
+      if (less(key1[u], key2[u], newKey1, newKey2)) {
+        // Outdated key from before the start moved
+        heapUpsert(u, newKey1, newKey2);
+      } else if (g[u] > rhs[u]) {
+        // Overconsistent, its cost is final
+        heapRemove(u);
+        expandedNodes++;
+        g[u] = rhs[u];
+        updateNeighbors(u);
+      } else {
+        // Underconsistent, its cost went up
+        heapRemove(u);
+        expandedNodes++;
+        g[u] = INF;
+        updateVertex(u);
+        updateNeighbors(u);
+      }
+    }
+    return g[start] < INF;
+  }
+
+
+  /**
+   * Writes the cells of the path found by the last {@link #plan()}, from the start to the goal.
+   *
+   * @param out Buffer for the cell indices, row * columns + column.
+   * @return The number of cells written, 0 if there is no path or it does not fit.
+   */
+  public int getPath(int[] out) {
+    if (start < 0 || goal < 0 || !(g[start] < INF) || out.length == 0) return 0;
+
+    int count = 0;
+    int cell = start;
+    out[count++] = cell;
+    while (cell != goal) {
+      if (count == out.length) return 0;
+
+      // Follow the steepest descent of cost-to-goal
+      int best = -1;
+      double bestCost = INF;
+      int row = cell / columns, column = cell % columns;
+      for (int i = 0; i < NEIGHBOR_ROWS.length; i++) {
+        int neighbor = neighbor(row, column, i);
+        if (neighbor < 0) continue;
+        double cost = cost(row, column, i) + g[neighbor];
+        if (cost < bestCost) {
+          bestCost = cost;
+          best = neighbor;
+        }
+      }
+      if (best < 0) return 0;
+
+      cell = best;
+      out[count++] = cell;
+    }
+    return count;
+  }
+
+
+  /** @return The number of cells expanded by the last {@link #plan()}. */
+  public int getExpandedNodes() {
+    return expandedNodes;
+  }
+
+
+  private void initialize() {
+    Arrays.fill(g, INF);
+    Arrays.fill(rhs, INF);
+    Arrays.fill(heapIndex, -1);
+    heapSize = 0;
+    km = 0;
+    lastStart = start;
+
+    rhs[goal] = 0;
+    heapUpsert(goal, heuristic(start, goal), 0);
+    initialized = true;
+  }
+
+
+  /** Updates the cell and its neighbors, whose edges into it (and diagonal edges past its corners) changed cost. */
+  private void cellChanged(int cell) {
+    if (!initialized) return;
+    updateVertex(cell);
+    updateNeighbors(cell);
+  }
+
+
+  private void updateNeighbors(int cell) {
+    int row = cell / columns, column = cell % columns;
+    for (int i = 0; i < NEIGHBOR_ROWS.length; i++) {
+      int neighbor = neighbor(row, column, i);
+      if (neighbor >= 0) updateVertex(neighbor);
+    }
+  }
+
+
+  private void updateVertex(int u) {
+    if (u != goal) {
+      double best = INF;
+      int row = u / columns, column = u % columns;
+      for (int i = 0; i < NEIGHBOR_ROWS.length; i++) {
+        int neighbor = neighbor(row, column, i);
+        if (neighbor >= 0) best = Math.min(best, cost(row, column, i) + g[neighbor]);
+      }
+      rhs[u] = best;
+    }
+
+    if (g[u] != rhs[u]) heapUpsert(u, calculateKey1(u), calculateKey2(u));
+    else if (heapIndex[u] >= 0) heapRemove(u);
+  }
+
+
+  /** @return Index of a neighbor, or -1 outside the grid. */
+  private int neighbor(int row, int column, int direction) {
+    int r = row + NEIGHBOR_ROWS[direction];
+    int c = column + NEIGHBOR_COLUMNS[direction];
+    return grid.contains(r, c) ? r * columns + c : -1;
+  }
+
+
+  /** @return Cost of the edge from a cell to its neighbor in a direction, infinite if blocked. */
+  private double cost(int row, int column, int direction) {
+    int r = row + NEIGHBOR_ROWS[direction];
+    int c = column + NEIGHBOR_COLUMNS[direction];
+    if (isBlocked(row, column) || isBlocked(r, c)) return INF;
+    if (direction < 4) return 1;
+    // No cutting corners
+    if (isBlocked(row, c) || isBlocked(r, column)) return INF;
+    return SQRT2;
+  }
+
+
+  /** Octile distance, consistent with the edge costs. */
+  private double heuristic(int a, int b) {
+    int dr = Math.abs(a / columns - b / columns);
+    int dc = Math.abs(a % columns - b % columns);
+    return Math.max(dr, dc) + (SQRT2 - 1) * Math.min(dr, dc);
+  }
+
+
+  private double calculateKey1(int s) {
+    return Math.min(g[s], rhs[s]) + heuristic(start, s) + km;
+  }
+
+
+  private double calculateKey2(int s) {
+    return Math.min(g[s], rhs[s]);
+  }
+
+
+  private static boolean less(double a1, double a2, double b1, double b2) {
+    return a1 < b1 || (a1 == b1 && a2 < b2);
+  }
+
+
+  /////////////////////////////// INDEXED HEAP ///////////////////////////////
+
+  private boolean heapLess(int i, int j) {
+    return less(key1[heap[i]], key2[heap[i]], key1[heap[j]], key2[heap[j]]);
+  }
+
+
+  private void heapUpsert(int cell, double k1, double k2) {
+    key1[cell] = k1;
+    key2[cell] = k2;
+    int i = heapIndex[cell];
+    if (i < 0) {
+      i = heapSize++;
+      heap[i] = cell;
+      heapIndex[cell] = i;
+    }
+    siftDown(siftUp(i));
+  }
+
+
+  private void heapRemove(int cell) {
+    int i = heapIndex[cell];
+    heapIndex[cell] = -1;
+    int last = --heapSize;
+    if (i == last) return;
+
+    heap[i] = heap[last];
+    heapIndex[heap[i]] = i;
+    siftDown(siftUp(i));
+  }
+
+
+  private int siftUp(int i) {
+    while (i > 0) {
+      int parent = (i - 1) >>> 1;
+      if (!heapLess(i, parent)) break;
+      swap(i, parent);
+      i = parent;
+    }
+    return i;
+  }
+
+
+  private void siftDown(int i) {
+    while (true) {
+      int smallest = i;
+      int left = 2 * i + 1, right = left + 1;
+      if (left < heapSize && heapLess(left, smallest)) smallest = left;
+      if (right < heapSize && heapLess(right, smallest)) smallest = right;
+      if (smallest == i) return;
+      swap(i, smallest);
+      i = smallest;
+    }
+  }
+
+
+  private void swap(int i, int j) {
+    int a = heap[i];
+    heap[i] = heap[j];
+    heap[j] = a;
+    heapIndex[heap[i]] = i;
+    heapIndex[heap[j]] = j;
+  }
+}
@@ -0,0 +1,341 @@
+// Copyright (c) FIRST and other WPILib contributors.
+// Open Source Software; you can modify and/or share it under the terms of
+// the WPILib BSD license file in the root directory of this project.
+
+package frc.robot.utils;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicReference;
+
+import com.pathplanner.lib.path.GoalEndState;
+import com.pathplanner.lib.path.PathConstraints;
+import com.pathplanner.lib.path.PathPlannerPath;
+import com.pathplanner.lib.path.Waypoint;
+import com.pathplanner.lib.pathfinding.Pathfinder;
+import com.pathplanner.lib.pathfinding.Pathfinding;
+
+import edu.wpi.first.math.Pair;
+import edu.wpi.first.math.geometry.Translation2d;
+import edu.wpi.first.networktables.DoublePublisher;
+import edu.wpi.first.networktables.IntegerPublisher;
+import edu.wpi.first.networktables.NetworkTable;
+import edu.wpi.first.networktables.NetworkTableInstance;
+
+
+/**
+ * A PathPlanner {@link Pathfinder} that plans with {@link DStarLite} on a background thread.
+ *
+ * <p>Install it with {@link Pathfinding#setPathfinder(Pathfinder)}; PathPlanner's pathfinding commands then set the
+ * start and goal, and dynamic obstacles (e.g. robots seen by vision) are passed in through
+ * {@link Pathfinding#setDynamicObstacles}. Every new start or goal request from a command is planned and discards any
+ * path for an earlier request; obstacle updates only wake the planning thread when they change the set of blocked cells,
+ * and the robot position they carry is used by the next replan. Moving the start or changing obstacles only repairs the existing search. The cell path is
+ * shortened to the cells that still have line of sight to each other. Each corner is rounded by a curve between
+ * anchors on the segments before and after it, tightened until the curve is clear of obstacles, and the result is
+ * returned as a {@link PathPlannerPath}. The duration of every replan (in ms) and the number of cells it expanded are published under "Pathfinding".
+ */
+public class DStarLitePathfinder implements Pathfinder {
+  // Distances of a corner's curve anchors from the corner, as fractions of the segment lengths, tried in order
+  private static final double[] CORNER_ANCHOR_FRACTIONS = {0.2, 0.1, 0.05, 0.02};
+  // Curve control points sit this fraction of the way from their anchor to the corner
+  private static final double CORNER_CONTROL_FRACTION = 0.55;
+
+  private final NavGrid grid;
+
+  // Requests from callers, guarded by lock
+  private final Object lock = new Object();
+  private Translation2d requestedStart = null;
+  private Translation2d requestedGoal = null;
+  private final long[] requestedObstacles;
+  private final long[] obstacleScratch;
+  private boolean requestChanged = false;
+  // Incremented by every start or goal request, paths planned for an older one are dropped
+  private long requestSequence = 0;
+
+  // Planning thread only
+  private final DStarLite planner;
+  private final long[] obstacles;
+  private final int[] pathCells;
+  private int goalCell = -1;
+
+  // Planning thread -> callers, the newest path not yet returned by getCurrentPath() (empty if there is none)
+  private final AtomicReference<List<Waypoint>> newPath = new AtomicReference<>();
+
+  private final DoublePublisher replanTimePub;
+  private final IntegerPublisher expandedNodesPub;
+
+
+  /**
+   * Creates a new DStarLitePathfinder and starts its planning thread.
+   *
+   * @param grid The navgrid to plan on.
+   */
+  public DStarLitePathfinder(NavGrid grid) {
+    this.grid = grid;
+    this.planner = new DStarLite(grid);
+
+    int words = (grid.getCellCount() + 63) >>> 6;
+    requestedObstacles = new long[words];
+    obstacleScratch = new long[words];
+    obstacles = new long[words];
+    pathCells = new int[grid.getCellCount()];
+
+    NetworkTable table = NetworkTableInstance.getDefault().getTable("Pathfinding");
+    replanTimePub = table.getDoubleTopic("replan time ms").publish();
+    expandedNodesPub = table.getIntegerTopic("expanded nodes").publish();
+
+    Thread thread = new Thread(this::run, "DStarLitePathfinder");
+    thread.setDaemon(true);
+    thread.start();
+  }
+
+
+  @Override
+  public boolean isNewPathAvailable() {
+    return newPath.get() != null;
+  }
+
+
+  @Override
+  public PathPlannerPath getCurrentPath(PathConstraints constraints, GoalEndState goalEndState) {
+    List<Waypoint> waypoints = newPath.getAndSet(null);
+    if (waypoints == null || waypoints.size() < 2) return null;
+
+    // The robot's rotation comes from the goal end state
+    var path = new PathPlannerPath(waypoints, constraints, null, goalEndState);
+    // Planned in field coordinates already
+    path.preventFlipping = true;
+    return path;
+  }
+
+
+  @Override
+  public void setStartPosition(Translation2d startPosition) {
+    synchronized (lock) {
+      requestedStart = startPosition;
+      newRequest();
+    }
+  }
+
+
+  @Override
+  public void setGoalPosition(Translation2d goalPosition) {
+    synchronized (lock) {
+      requestedGoal = goalPosition;
+      newRequest();
+    }
+  }
+
+
+  /**
+   * Always plans for a start or goal request, even if unchanged, since the command asking expects a new path. Call with
+   * the lock held.
+   */
+  private void newRequest() {
+    requestSequence++;
+    newPath.set(null);
+    requestChanged = true;
+    lock.notifyAll();
+  }
+
+
+  @Override
+  public void setDynamicObstacles(List<Pair<Translation2d, Translation2d>> obs, Translation2d currentRobotPos) {
+    synchronized (lock) {
+      Arrays.fill(obstacleScratch, 0);
+      for (Pair<Translation2d, Translation2d> box : obs) {
+        grid.fillRectangle(obstacleScratch, box.getFirst().getX(), box.getFirst().getY(), box.getSecond().getX(), box.getSecond().getY());
+      }
+      // The robot position is only picked up by the next replan, as with LocalADStar, which only replans for changes
+      requestedStart = currentRobotPos;
+      if (!Arrays.equals(obstacleScratch, requestedObstacles)) {
+        System.arraycopy(obstacleScratch, 0, requestedObstacles, 0, obstacleScratch.length);
+        requestChanged = true;
+        lock.notifyAll();
+      }
+    }
+  }
+
+
+  private void run() {
+    try {
+      while (true) {
+        Translation2d start, goal;
+        long sequence;
+        synchronized (lock) {
+          while (!requestChanged || requestedStart == null || requestedGoal == null) lock.wait();
+          start = requestedStart;
+          goal = requestedGoal;
+          sequence = requestSequence;
+          System.arraycopy(requestedObstacles, 0, obstacles, 0, obstacles.length);
+          requestChanged = false;
+        }
+
+        List<Waypoint> waypoints = replan(start, goal);
+        synchronized (lock) {
+          if (sequence == requestSequence) newPath.set(waypoints);
+        }
+      }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+  }
+
+
+  /** @return The waypoints of the planned path from start to goal, empty if there is none. */
+  private List<Waypoint> replan(Translation2d start, Translation2d goal) {
+    long startTime = System.nanoTime();
+
+    planner.setDynamicObstacles(obstacles);
+
+    // Plan from and to the nearest free cells, e.g. when an obstacle covers the robot
+    int startCell = nearestFreeCell(grid.rowOf(start.getY()), grid.columnOf(start.getX()));
+    int nearestGoalCell = nearestFreeCell(grid.rowOf(goal.getY()), grid.columnOf(goal.getX()));
+    if (startCell < 0 || nearestGoalCell < 0) return List.of();
+
+    int columns = grid.getColumns();
+    if (nearestGoalCell != goalCell) {
+      goalCell = nearestGoalCell;
+      planner.setGoal(goalCell / columns, goalCell % columns);
+    }
+    planner.setStart(startCell / columns, startCell % columns);
+
+    int count = planner.plan() ? planner.getPath(pathCells) : 0;
+
+    List<Translation2d> points = new ArrayList<>();
+    if (count > 0) {
+      boolean startFree = !planner.isBlocked(grid.rowOf(start.getY()), grid.columnOf(start.getX()));
+      boolean goalFree = !planner.isBlocked(grid.rowOf(goal.getY()), grid.columnOf(goal.getX()));
+      points.add(startFree ? start : cellCenter(startCell));
+
+      // Keep only the cells where the path must turn to stay clear of obstacles
+      Translation2d anchor = points.get(0);
+      for (int i = 1; i < count - 1; i++) {
+        if (!hasLineOfSight(anchor, cellCenter(pathCells[i + 1]))) {
+          anchor = cellCenter(pathCells[i]);
+          points.add(anchor);
+        }
+      }
+
+      Translation2d end = goalFree ? goal : cellCenter(goalCell);
+      if (end.getDistance(points.get(points.size() - 1)) > 1e-3) points.add(end);
+    }
+
+    List<Waypoint> waypoints = points.size() < 2 ? List.of() : toWaypoints(points);
+
+    replanTimePub.set((System.nanoTime() - startTime) / 1e6);
+    expandedNodesPub.set(planner.getExpandedNodes());
+    return waypoints;
+  }
+
+
+  /**
+   * Turns the corners of a path into Bezier waypoints. Each corner is replaced by two anchors, one on the segment into
+   * it and one on the segment out of it, joined by a curve whose control points lie on those segments, so the curve
+   * stays inside the triangle they cut off. The anchors start at {@link #CORNER_ANCHOR_FRACTIONS}[0] of the segments
+   * from the corner and move closer until the curve is clear of obstacles. Between corners the path stays on the
+   * straight, line-of-sight checked segments.
+   */
+  private List<Waypoint> toWaypoints(List<Translation2d> points) {
+    int corners = points.size() - 2;
+    int count = 2 + 2 * corners;
+    Translation2d[] anchors = new Translation2d[count];
+    Translation2d[] prevControls = new Translation2d[count];
+    Translation2d[] nextControls = new Translation2d[count];
+
+    anchors[0] = points.get(0);
+    anchors[count - 1] = points.get(points.size() - 1);
+    for (int i = 0; i < corners; i++) {
+      Translation2d before = points.get(i);
+      Translation2d corner = points.get(i + 1);
+      Translation2d after = points.get(i + 2);
+
+      for (double fraction : CORNER_ANCHOR_FRACTIONS) {
+        Translation2d in = corner.interpolate(before, fraction);
+        Translation2d out = corner.interpolate(after, fraction);
+        Translation2d inControl = in.interpolate(corner, CORNER_CONTROL_FRACTION);
+        Translation2d outControl = out.interpolate(corner, CORNER_CONTROL_FRACTION);
+
+        anchors[1 + 2 * i] = in;
+        nextControls[1 + 2 * i] = inControl;
+        prevControls[2 + 2 * i] = outControl;
+        anchors[2 + 2 * i] = out;
+        if (isCurveClear(in, inControl, outControl, out)) break;
+      }
+    }
+
+    // Controls on the straight segments between anchors, a third of the way along
+    for (int i = 0; i < count - 1; i++) {
+      if (nextControls[i] == null) nextControls[i] = anchors[i].interpolate(anchors[i + 1], 1.0 / 3);
+      if (prevControls[i + 1] == null) prevControls[i + 1] = anchors[i + 1].interpolate(anchors[i], 1.0 / 3);
+    }
+
+    List<Waypoint> waypoints = new ArrayList<>(count);
+    for (int i = 0; i < count; i++) {
+      waypoints.add(new Waypoint(i == 0 ? null : prevControls[i], anchors[i], i == count - 1 ? null : nextControls[i]));
+    }
+    return waypoints;
+  }
+
+
+  /** @return Whether a cubic Bezier curve only crosses free cells, sampled about every quarter cell. */
+  private boolean isCurveClear(Translation2d p0, Translation2d p1, Translation2d p2, Translation2d p3) {
+    double length = p0.getDistance(p1) + p1.getDistance(p2) + p2.getDistance(p3);
+    int steps = Math.max((int) Math.ceil(length / (grid.getNodeSize() / 4)), 1);
+    for (int i = 0; i <= steps; i++) {
+      double t = (double) i / steps;
+      double u = 1 - t;
+      double a = u * u * u, b = 3 * u * u * t, c = 3 * u * t * t, d = t * t * t;
+      double x = a * p0.getX() + b * p1.getX() + c * p2.getX() + d * p3.getX();
+      double y = a * p0.getY() + b * p1.getY() + c * p2.getY() + d * p3.getY();
+      if (planner.isBlocked(grid.rowOf(y), grid.columnOf(x))) return false;
+    }
+    return true;
+  }
+
+
+  /** @return The closest cell that is not blocked, searching rings of growing radius, or -1 if there is none. */
+  private int nearestFreeCell(int row, int column) {
+    if (!planner.isBlocked(row, column)) return row * grid.getColumns() + column;
+
+    int maxRadius = Math.max(grid.getRows(), grid.getColumns());
+    for (int radius = 1; radius <= maxRadius; radius++) {
+      int best = -1;
+      int bestDistance = Integer.MAX_VALUE;
+      for (int r = row - radius; r <= row + radius; r++) {
+        for (int c = column - radius; c <= column + radius; c++) {
+          if (Math.max(Math.abs(r - row), Math.abs(c - column)) != radius || planner.isBlocked(r, c)) continue;
+          int distance = (r - row) * (r - row) + (c - column) * (c - column);
+          if (distance < bestDistance) {
+            bestDistance = distance;
+            best = r * grid.getColumns() + c;
+          }
+        }
+      }
+      if (best >= 0) return best;
+    }
+    return -1;
+  }
+
+
+  /** @return Whether the straight segment between two points only crosses free cells, sampled every quarter cell. */
+  private boolean hasLineOfSight(Translation2d from, Translation2d to) {
+    double distance = from.getDistance(to);
+    int steps = (int) Math.ceil(distance / (grid.getNodeSize() / 4));
+    for (int i = 0; i <= steps; i++) {
+      double t = steps > 0 ? (double) i / steps : 0;
+      double x = from.getX() + (to.getX() - from.getX()) * t;
+      double y = from.getY() + (to.getY() - from.getY()) * t;
+      if (planner.isBlocked(grid.rowOf(y), grid.columnOf(x))) return false;
+    }
+    return true;
+  }
+
+
+  private Translation2d cellCenter(int cell) {
+    int columns = grid.getColumns();
+    return new Translation2d(grid.centerX(cell % columns), grid.centerY(cell / columns));
+  }
+}
@@ -0,0 +1,235 @@
+// Copyright (c) FIRST and other WPILib contributors.
+// Open Source Software; you can modify and/or share it under the terms of
+// the WPILib BSD license file in the root directory of this project.
+
+package frc.robot.utils;
+
+import edu.wpi.first.math.MathUtil;
+import edu.wpi.first.math.geometry.Pose2d;
+import edu.wpi.first.math.kinematics.ChassisSpeeds;
+
+
+/**
+ * A coupled motion profile that moves a holonomic robot to a pose along a straight line.
+ *
+ * <p>Instead of profiling x, y and heading independently (which makes diagonal moves slower than the robot can go and
+ * lets the axes finish at different times), translation follows a single trapezoid profile along the vector to the
+ * goal, limited by the chassis' maximum speed and acceleration. The heading follows the translation's progress, so
+ * both arrive together; if that would need more angular speed or acceleration than allowed, the translation is slowed
+ * down to match. With no distance left to cover, the heading follows its own trapezoid profile.
+ *
+ * <p>Each {@link #calculate} replans from the current setpoint, so a goal that moves is tracked smoothly: velocity
+ * along the new direction is kept, and velocity across it is braked at the maximum acceleration. The trapezoids are
+ * computed inline, as in {@link edu.wpi.first.math.trajectory.TrapezoidProfile}, so that nothing is allocated per step.
+ */
+public class DriveToPoseProfile {
+  // Below this distance in m, only the heading is profiled
+  private static final double MIN_DISTANCE = 1e-3;
+
+  private final double maxVelocity, maxAcceleration, maxAngularVelocity, maxAngularAcceleration;
+
+  // Setpoint, field-relative
+  private double x, y, theta;
+  private double vx, vy, omega;
+  private double timeRemaining;
+
+  // Result of the last trapezoid step
+  private double stepPosition, stepVelocity, stepTotalTime;
+
+
+  /**
+   * Creates a new DriveToPoseProfile.
+   *
+   * @param maxVelocity            Maximum translational speed in m/s.
+   * @param maxAcceleration        Maximum translational acceleration in m/s^2.
+   * @param maxAngularVelocity     Maximum angular speed in rad/s.
+   * @param maxAngularAcceleration Maximum angular acceleration in rad/s^2.
+   */
+  public DriveToPoseProfile(double maxVelocity, double maxAcceleration, double maxAngularVelocity, double maxAngularAcceleration) {
+    this.maxVelocity = maxVelocity;
+    this.maxAcceleration = maxAcceleration;
+    this.maxAngularVelocity = maxAngularVelocity;
+    this.maxAngularAcceleration = maxAngularAcceleration;
+  }
+
+
+  /**
+   * Resets the setpoint to the robot's current state.
+   *
+   * @param pose          The robot pose.
+   * @param fieldVelocity The robot's field-relative velocity.
+   */
+  public void reset(Pose2d pose, ChassisSpeeds fieldVelocity) {
+    x = pose.getX();
+    y = pose.getY();
+    theta = pose.getRotation().getRadians();
+    vx = fieldVelocity.vxMetersPerSecond;
+    vy = fieldVelocity.vyMetersPerSecond;
+    omega = fieldVelocity.omegaRadiansPerSecond;
+    timeRemaining = 0;
+  }
+
+
+  /**
+   * Advances the setpoint by one time step towards the goal.
+   *
+   * @param dt   Time step in s.
+   * @param goal The goal pose, may change between calls.
+   */
+  public void calculate(double dt, Pose2d goal) {
+    double dx = goal.getX() - x;
+    double dy = goal.getY() - y;
+    double distance = Math.hypot(dx, dy);
+    double dTheta = MathUtil.angleModulus(goal.getRotation().getRadians() - theta);
+
+    double ux = distance > MIN_DISTANCE ? dx / distance : 0;
+    double uy = distance > MIN_DISTANCE ? dy / distance : 0;
+
+    // Split the velocity into the part along the line to the goal and the part across it
+    double vAlong = vx * ux + vy * uy;
+    double vAcrossX = vx - vAlong * ux;
+    double vAcrossY = vy - vAlong * uy;
+
+    // Brake the velocity across the line, the displacement is the average velocity over the step
+    double vAcross = Math.hypot(vAcrossX, vAcrossY);
+    double acrossScale = vAcross > 0 ? Math.max(vAcross - maxAcceleration * dt, 0) / vAcross : 0;
+    x += vAcrossX * (1 + acrossScale) / 2 * dt;
+    y += vAcrossY * (1 + acrossScale) / 2 * dt;
+    vAcrossX *= acrossScale;
+    vAcrossY *= acrossScale;
+
+    if (distance > MIN_DISTANCE) {
+      // Heading follows translation progress, so slow translation down to keep the rotation within its limits
+      double translationMaxVelocity = maxVelocity;
+      double translationMaxAcceleration = maxAcceleration;
+      double radiansPerMeter = Math.abs(dTheta) / distance;
+      if (radiansPerMeter > 0) {
+        translationMaxVelocity = Math.min(translationMaxVelocity, maxAngularVelocity / radiansPerMeter);
+        translationMaxAcceleration = Math.min(translationMaxAcceleration, maxAngularAcceleration / radiansPerMeter);
+      }
+
+      stepTrapezoid(dt, distance, vAlong, translationMaxVelocity, translationMaxAcceleration);
+      timeRemaining = Math.max(stepTotalTime - dt, 0);
+
+      x += ux * stepPosition;
+      y += uy * stepPosition;
+      vx = ux * stepVelocity + vAcrossX;
+      vy = uy * stepVelocity + vAcrossY;
+
+      // Blend from the current angular velocity (measured, right after a reset) into following the translation
+      double coupledOmega = dTheta / distance * stepVelocity;
+      double nextOmega = MathUtil.clamp(coupledOmega, omega - maxAngularAcceleration * dt, omega + maxAngularAcceleration * dt);
+      if (nextOmega == coupledOmega) {
+        theta = MathUtil.angleModulus(theta + dTheta * stepPosition / distance);
+      } else {
+        theta = MathUtil.angleModulus(theta + (omega + nextOmega) / 2 * dt);
+      }
+      omega = nextOmega;
+    } else {
+      stepTrapezoid(dt, dTheta, omega, maxAngularVelocity, maxAngularAcceleration);
+      timeRemaining = Math.max(stepTotalTime - dt, 0);
+
+      x += dx;
+      y += dy;
+      vx = vAcrossX;
+      vy = vAcrossY;
+      theta = MathUtil.angleModulus(theta + stepPosition);
+      omega = stepVelocity;
+    }
+  }
+
+
+  /**
+   * Steps a trapezoid profile from position 0 to rest at a distance, like
+   * {@link edu.wpi.first.math.trajectory.TrapezoidProfile#calculate}, and stores the result in {@link #stepPosition},
+   * {@link #stepVelocity} and {@link #stepTotalTime}.
+   */
+  private void stepTrapezoid(double dt, double distance, double velocity, double maxVelocity, double maxAcceleration) {
+    // Profile towards positive positions, and flip the result back
+    double direction = distance < 0 ? -1 : 1;
+    distance *= direction;
+    velocity = MathUtil.clamp(velocity * direction, -maxVelocity, maxVelocity);
+
+    // Extend the profile back to where it would have started from rest
+    double cutoffBegin = velocity / maxAcceleration;
+    double fullTrapezoidDistance = cutoffBegin * cutoffBegin * maxAcceleration / 2 + distance;
+
+    double accelerationTime = maxVelocity / maxAcceleration;
+    double fullSpeedDistance = fullTrapezoidDistance - accelerationTime * accelerationTime * maxAcceleration;
+    if (fullSpeedDistance < 0) {
+      accelerationTime = Math.sqrt(fullTrapezoidDistance / maxAcceleration);
+      fullSpeedDistance = 0;
+    }
+
+    double endAcceleration = accelerationTime - cutoffBegin;
+    double endFullSpeed = endAcceleration + fullSpeedDistance / maxVelocity;
+    double endDeceleration = endFullSpeed + accelerationTime;
+
+    if (dt < endAcceleration) {
+      stepPosition = (velocity + dt * maxAcceleration / 2) * dt;
+      stepVelocity = velocity + dt * maxAcceleration;
+    } else if (dt < endFullSpeed) {
+      stepPosition = (velocity + endAcceleration * maxAcceleration / 2) * endAcceleration + maxVelocity * (dt - endAcceleration);
+      stepVelocity = maxVelocity;
+    } else if (dt <= endDeceleration) {
+      double timeLeft = endDeceleration - dt;
+      stepPosition = distance - timeLeft * maxAcceleration / 2 * timeLeft;
+      stepVelocity = timeLeft * maxAcceleration;
+    } else {
+      stepPosition = distance;
+      stepVelocity = 0;
+    }
+
+    stepPosition *= direction;
+    stepVelocity *= direction;
+    stepTotalTime = endDeceleration;
+  }
+
+
+  /** @return Setpoint field X in m. */
+  public double getX() {
+    return x;
+  }
+
+
+  /** @return Setpoint field Y in m. */
+  public double getY() {
+    return y;
+  }
+
+
+  /** @return Setpoint heading in rad. */
+  public double getTheta() {
+    return theta;
+  }
+
+
+  /** @return Setpoint field-relative X velocity in m/s. */
+  public double getVx() {
+    return vx;
+  }
+
+
+  /** @return Setpoint field-relative Y velocity in m/s. */
+  public double getVy() {
+    return vy;
+  }
+
+
+  /** @return Setpoint angular velocity in rad/s. */
+  public double getOmega() {
+    return omega;
+  }
+
+
+  /** @return Time until the setpoint reaches the goal, as of the last {@link #calculate}, in s. */
+  public double getTimeRemaining() {
+    return timeRemaining;
+  }
+
+
+  /** @return Whether the setpoint has reached the goal. */
+  public boolean isFinished() {
+    return timeRemaining == 0;
+  }
+}
@@ -3,9 +3,13 @@
 package frc.robot.utils;
 
 import edu.wpi.first.networktables.DoubleArrayEntry;
+import edu.wpi.first.networktables.DoubleArraySubscriber;
+import edu.wpi.first.networktables.DoubleEntry;
 import edu.wpi.first.networktables.NetworkTable;
 import edu.wpi.first.networktables.NetworkTableEntry;
 import edu.wpi.first.networktables.NetworkTableInstance;
+import edu.wpi.first.networktables.PubSubOption;
+import edu.wpi.first.networktables.StringEntry;
 import edu.wpi.first.networktables.TimestampedDoubleArray;
 import edu.wpi.first.math.geometry.Pose2d;
 import edu.wpi.first.math.geometry.Pose3d;
@@ -19,8 +23,15 @@ import java.io.IOException;
 import java.net.HttpURLConnection;
 import java.net.MalformedURLException;
 import java.net.URL;
+import java.util.Arrays;
 import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 
 import com.fasterxml.jackson.annotation.JsonFormat;
 import com.fasterxml.jackson.annotation.JsonFormat.Shape;
@@ -36,7 +47,61 @@ import java.util.concurrent.ConcurrentHashMap;
  */
 public class LimelightHelpers {
 
-    private static final Map<String, DoubleArrayEntry> doubleArrayEntries = new ConcurrentHashMap<>();
+    private static final double[] EMPTY_DOUBLE_ARRAY = new double[0];
+    private static final String[] EMPTY_STRING_ARRAY = new String[0];
+
+    /** Number of values per tag in botpose fiducial data and the "rawfiducials" array. */
+    public static final int RAW_FIDUCIAL_STRIDE = 7;
+    /** Number of values per detection in the "rawdetections" array. */
+    public static final int RAW_DETECTION_STRIDE = 12;
+
+    /**
+     * Per-camera cache of NetworkTables handles, so reads and writes skip the string-keyed table and entry lookups.
+     */
+    private static final Map<String, LimelightNTHandles> ntHandles = new ConcurrentHashMap<>();
+
+    /**
+     * Typed NetworkTables handles for one Limelight, created once per key and reused by every helper.
+     */
+    private static final class LimelightNTHandles {
+        private final NetworkTable table;
+        private final Map<String, NetworkTableEntry> entries = new ConcurrentHashMap<>();
+        private final Map<String, DoubleEntry> doubleEntries = new ConcurrentHashMap<>();
+        private final Map<String, DoubleArrayEntry> doubleArrayEntries = new ConcurrentHashMap<>();
+        private final Map<String, StringEntry> stringEntries = new ConcurrentHashMap<>();
+
+        private LimelightNTHandles(String limelightName) {
+            table = NetworkTableInstance.getDefault().getTable(limelightName);
+        }
+
+        // Each getter checks the map first so that cache hits don't allocate a capturing lambda
+
+        private NetworkTableEntry entry(String key) {
+            NetworkTableEntry entry = entries.get(key);
+            return entry != null ? entry : entries.computeIfAbsent(key, table::getEntry);
+        }
+
+        private DoubleEntry doubleEntry(String key) {
+            DoubleEntry entry = doubleEntries.get(key);
+            return entry != null ? entry : doubleEntries.computeIfAbsent(key, k -> table.getDoubleTopic(k).getEntry(0.0));
+        }
+
+        private DoubleArrayEntry doubleArrayEntry(String key) {
+            DoubleArrayEntry entry = doubleArrayEntries.get(key);
+            return entry != null ? entry : doubleArrayEntries.computeIfAbsent(key, k -> table.getDoubleArrayTopic(k).getEntry(EMPTY_DOUBLE_ARRAY));
+        }
+
+        private StringEntry stringEntry(String key) {
+            StringEntry entry = stringEntries.get(key);
+            return entry != null ? entry : stringEntries.computeIfAbsent(key, k -> table.getStringTopic(k).getEntry(""));
+        }
+    }
+
+    private static LimelightNTHandles getNTHandles(String limelightName) {
+        String name = sanitizeName(limelightName);
+        LimelightNTHandles handles = ntHandles.get(name);
+        return handles != null ? handles : ntHandles.computeIfAbsent(name, LimelightNTHandles::new);
+    }
 
     /**
      * Represents a Color/Retroreflective Target Result extracted from JSON Output
@@ -572,6 +637,147 @@ public class LimelightHelpers {
 
     }
 
+    /**
+     * A caller-owned Pose Estimate that is decoded in place, so that reading a new estimate every loop produces no
+     * garbage. Raw fiducials are stored flat in {@link #fiducials}, {@link #RAW_FIDUCIAL_STRIDE} values per tag in the
+     * order id, txnc, tync, ta, distToCamera, distToRobot, ambiguity.
+     */
+    public static class MutablePoseEstimate {
+        public boolean valid;
+        public double x;
+        public double y;
+        public double yawRadians;
+        public double timestampSeconds;
+        public double latency;
+        public int tagCount;
+        public double tagSpan;
+        public double avgTagDist;
+        public double avgTagArea;
+        public boolean isMegaTag2;
+
+        /** Flat raw fiducial values, only the first {@link #fiducialCount} tags are valid. */
+        public final double[] fiducials;
+        public int fiducialCount;
+
+        /**
+         * Instantiates a MutablePoseEstimate with room for the given number of raw fiducials. Tags past the capacity
+         * are not decoded.
+         *
+         * @param maxFiducials Maximum number of raw fiducials kept
+         */
+        public MutablePoseEstimate(int maxFiducials) {
+            this.fiducials = new double[maxFiducials * RAW_FIDUCIAL_STRIDE];
+        }
+
+        public int getFiducialId(int index) {
+            return (int)fiducials[index * RAW_FIDUCIAL_STRIDE];
+        }
+
+        public double getFiducialTxnc(int index) {
+            return fiducials[index * RAW_FIDUCIAL_STRIDE + 1];
+        }
+
+        public double getFiducialTync(int index) {
+            return fiducials[index * RAW_FIDUCIAL_STRIDE + 2];
+        }
+
+        public double getFiducialTa(int index) {
+            return fiducials[index * RAW_FIDUCIAL_STRIDE + 3];
+        }
+
+        public double getFiducialDistToCamera(int index) {
+            return fiducials[index * RAW_FIDUCIAL_STRIDE + 4];
+        }
+
+        public double getFiducialDistToRobot(int index) {
+            return fiducials[index * RAW_FIDUCIAL_STRIDE + 5];
+        }
+
+        public double getFiducialAmbiguity(int index) {
+            return fiducials[index * RAW_FIDUCIAL_STRIDE + 6];
+        }
+
+        /**
+         * Copies this estimate into a new, allocating {@link PoseEstimate}.
+         *
+         * @return The PoseEstimate
+         */
+        public PoseEstimate toPoseEstimate() {
+            RawFiducial[] rawFiducials = new RawFiducial[tagCount];
+            for (int i = 0; i < fiducialCount && i < tagCount; i++) {
+                rawFiducials[i] = new RawFiducial(getFiducialId(i), getFiducialTxnc(i), getFiducialTync(i), getFiducialTa(i),
+                        getFiducialDistToCamera(i), getFiducialDistToRobot(i), getFiducialAmbiguity(i));
+            }
+            return new PoseEstimate(new Pose2d(x, y, new Rotation2d(yawRadians)), timestampSeconds, latency,
+                    tagCount, tagSpan, avgTagDist, avgTagArea, rawFiducials, isMegaTag2);
+        }
+    }
+
+    /**
+     * Reads every botpose value a Limelight published since the previous read, instead of only the latest one.
+     *
+     * <p>The getBotPoseEstimate helpers sample the newest value, so frames published between two robot loops are lost
+     * when the camera runs faster than the loop. This subscribes with a value queue so each frame is returned, oldest
+     * first, with its own timestamp.
+     */
+    public static class BotPoseSubscriber implements AutoCloseable {
+        private final DoubleArraySubscriber subscriber;
+        private final boolean isMegaTag2;
+
+        /**
+         * Subscribes to a botpose entry.
+         *
+         * @param limelightName Name of the Limelight camera
+         * @param entryName Botpose entry, e.g. "botpose_orb_wpiblue"
+         * @param isMegaTag2 Whether the entry holds MegaTag2 estimates
+         * @param queueDepth Number of values kept between reads, older values are dropped
+         */
+        public BotPoseSubscriber(String limelightName, String entryName, boolean isMegaTag2, int queueDepth) {
+            this.subscriber = getLimelightNTTable(limelightName).getDoubleArrayTopic(entryName).subscribe(EMPTY_DOUBLE_ARRAY,
+                    PubSubOption.keepDuplicates(true), PubSubOption.pollStorage(queueDepth));
+            this.isMegaTag2 = isMegaTag2;
+        }
+
+        /**
+         * Decodes every value received since the previous read into the caller-owned estimates, oldest first. If more
+         * values arrived than out holds, the oldest are skipped.
+         *
+         * @param out Estimates to overwrite
+         * @return Number of estimates written, including ones marked invalid because the camera saw no tags
+         */
+        public int readQueue(MutablePoseEstimate[] out) {
+            TimestampedDoubleArray[] values = subscriber.readQueue();
+            int skip = Math.max(values.length - out.length, 0);
+            for (int i = skip; i < values.length; i++) {
+                decodeBotPoseEstimate(values[i].value, values[i].timestamp, isMegaTag2, out[i - skip]);
+            }
+            return values.length - skip;
+        }
+
+        /**
+         * Allocating variant of {@link #readQueue(MutablePoseEstimate[])}. Values without an estimate are left out.
+         *
+         * @return The estimates received since the previous read, oldest first
+         */
+        public PoseEstimate[] readQueue() {
+            TimestampedDoubleArray[] values = subscriber.readQueue();
+            PoseEstimate[] estimates = new PoseEstimate[values.length];
+            int count = 0;
+            for (TimestampedDoubleArray value : values) {
+                MutablePoseEstimate estimate = new MutablePoseEstimate(Math.max((int)extractArrayEntry(value.value, 7), 0));
+                if (decodeBotPoseEstimate(value.value, value.timestamp, isMegaTag2, estimate)) {
+                    estimates[count++] = estimate.toPoseEstimate();
+                }
+            }
+            return count == estimates.length ? estimates : Arrays.copyOf(estimates, count);
+        }
+
+        @Override
+        public void close() {
+            subscriber.close();
+        }
+    }
+
     /**
      * Encapsulates the state of an internal Limelight IMU.
      */
@@ -702,48 +908,60 @@ public class LimelightHelpers {
     }
 
     private static PoseEstimate getBotPoseEstimate(String limelightName, String entryName, boolean isMegaTag2) {
-        DoubleArrayEntry poseEntry = LimelightHelpers.getLimelightDoubleArrayEntry(limelightName, entryName);
-
-        TimestampedDoubleArray tsValue = poseEntry.getAtomic();
-        double[] poseArray = tsValue.value;
-        long timestamp = tsValue.timestamp;
-
-        if (poseArray.length == 0) {
+        TimestampedDoubleArray tsValue = getLimelightDoubleArrayEntry(limelightName, entryName).getAtomic();
+        if (tsValue.value.length == 0) {
             // Handle the case where no data is available
             return null; // or some default PoseEstimate
         }
 
-        var pose = toPose2D(poseArray);
-        double latency = extractArrayEntry(poseArray, 6);
-        int tagCount = (int)extractArrayEntry(poseArray, 7);
-        double tagSpan = extractArrayEntry(poseArray, 8);
-        double tagDist = extractArrayEntry(poseArray, 9);
-        double tagArea = extractArrayEntry(poseArray, 10);
+        int tagCount = (int)extractArrayEntry(tsValue.value, 7);
+        MutablePoseEstimate estimate = new MutablePoseEstimate(Math.max(tagCount, 0));
+        decodeBotPoseEstimate(tsValue.value, tsValue.timestamp, isMegaTag2, estimate);
+        return estimate.toPoseEstimate();
+    }
+
+    private static boolean getBotPoseEstimate(String limelightName, String entryName, boolean isMegaTag2, MutablePoseEstimate out) {
+        // The NT value array itself is still allocated by the JNI read
+        TimestampedDoubleArray tsValue = getLimelightDoubleArrayEntry(limelightName, entryName).getAtomic();
+        return decodeBotPoseEstimate(tsValue.value, tsValue.timestamp, isMegaTag2, out);
+    }
+
+    /**
+     * Decodes a botpose array (pose, latency, tag count/span/dist/area, then raw fiducials) in place.
+     *
+     * @param poseArray Values of a botpose entry, e.g. botpose_orb_wpiblue
+     * @param timestampMicros NT server timestamp of the value in microseconds
+     * @param isMegaTag2 Whether the array is a MegaTag2 estimate
+     * @param out Estimate to overwrite
+     * @return true if the array held an estimate, otherwise out is marked invalid
+     */
+    public static boolean decodeBotPoseEstimate(double[] poseArray, long timestampMicros, boolean isMegaTag2, MutablePoseEstimate out) {
+        out.isMegaTag2 = isMegaTag2;
+        out.fiducialCount = 0;
+        if (poseArray.length < 6) {
+            out.valid = false;
+            return false;
+        }
+
+        out.valid = true;
+        out.x = poseArray[0];
+        out.y = poseArray[1];
+        out.yawRadians = Units.degreesToRadians(poseArray[5]);
+        out.latency = extractArrayEntry(poseArray, 6);
+        out.tagCount = (int)extractArrayEntry(poseArray, 7);
+        out.tagSpan = extractArrayEntry(poseArray, 8);
+        out.avgTagDist = extractArrayEntry(poseArray, 9);
+        out.avgTagArea = extractArrayEntry(poseArray, 10);
 
         // Convert server timestamp from microseconds to seconds and adjust for latency
-        double adjustedTimestamp = (timestamp / 1000000.0) - (latency / 1000.0);
-
-        RawFiducial[] rawFiducials = new RawFiducial[tagCount];
-        int valsPerFiducial = 7;
-        int expectedTotalVals = 11 + valsPerFiducial * tagCount;
-
-        if (poseArray.length != expectedTotalVals) {
-            // Don't populate fiducials
-        } else {
-            for(int i = 0; i < tagCount; i++) {
-                int baseIndex = 11 + (i * valsPerFiducial);
-                int id = (int)poseArray[baseIndex];
-                double txnc = poseArray[baseIndex + 1];
-                double tync = poseArray[baseIndex + 2];
-                double ta = poseArray[baseIndex + 3];
-                double distToCamera = poseArray[baseIndex + 4];
-                double distToRobot = poseArray[baseIndex + 5];
-                double ambiguity = poseArray[baseIndex + 6];
-                rawFiducials[i] = new RawFiducial(id, txnc, tync, ta, distToCamera, distToRobot, ambiguity);
-            }
-        }
+        out.timestampSeconds = (timestampMicros / 1000000.0) - (out.latency / 1000.0);
 
-        return new PoseEstimate(pose, adjustedTimestamp, latency, tagCount, tagSpan, tagDist, tagArea, rawFiducials, isMegaTag2);
+        // Only populate fiducials if the array holds exactly tagCount of them
+        if (out.tagCount > 0 && poseArray.length == 11 + RAW_FIDUCIAL_STRIDE * out.tagCount) {
+            out.fiducialCount = Math.min(out.tagCount, out.fiducials.length / RAW_FIDUCIAL_STRIDE);
+            System.arraycopy(poseArray, 11, out.fiducials, 0, out.fiducialCount * RAW_FIDUCIAL_STRIDE);
+        }
+        return true;
     }
 
     /**
@@ -753,8 +971,7 @@ public class LimelightHelpers {
      * @return Array of RawFiducial objects containing detection details
      */
     public static RawFiducial[] getRawFiducials(String limelightName) {
-        var entry = LimelightHelpers.getLimelightNTTableEntry(limelightName, "rawfiducials");
-        var rawFiducialArray = entry.getDoubleArray(new double[0]);
+        var rawFiducialArray = getLimelightNTDoubleArray(limelightName, "rawfiducials");
         int valsPerEntry = 7;
         if (rawFiducialArray.length % valsPerEntry != 0) {
             return new RawFiducial[0];
@@ -786,8 +1003,7 @@ public class LimelightHelpers {
      * @return Array of RawDetection objects containing detection details
      */
     public static RawDetection[] getRawDetections(String limelightName) {
-        var entry = LimelightHelpers.getLimelightNTTableEntry(limelightName, "rawdetections");
-        var rawDetectionArray = entry.getDoubleArray(new double[0]);
+        var rawDetectionArray = getLimelightNTDoubleArray(limelightName, "rawdetections");
         int valsPerEntry = 12;
         if (rawDetectionArray.length % valsPerEntry != 0) {
             return new RawDetection[0];
@@ -817,6 +1033,39 @@ public class LimelightHelpers {
         return rawDetections;
     }
 
+    /**
+     * Copies the latest raw fiducial results into a caller-owned flat buffer, {@link #RAW_FIDUCIAL_STRIDE} values per
+     * tag in the order id, txnc, tync, ta, distToCamera, distToRobot, ambiguity.
+     *
+     * @param limelightName Name/identifier of the Limelight
+     * @param out Buffer to fill, tags that do not fit are dropped
+     * @return Number of fiducials copied
+     */
+    public static int getRawFiducials(String limelightName, double[] out) {
+        return copyRawEntries(getLimelightNTDoubleArray(limelightName, "rawfiducials"), RAW_FIDUCIAL_STRIDE, out);
+    }
+
+    /**
+     * Copies the latest raw neural detector results into a caller-owned flat buffer, {@link #RAW_DETECTION_STRIDE}
+     * values per detection in the order classId, txnc, tync, ta, then the four corners' x and y.
+     *
+     * @param limelightName Name/identifier of the Limelight
+     * @param out Buffer to fill, detections that do not fit are dropped
+     * @return Number of detections copied
+     */
+    public static int getRawDetections(String limelightName, double[] out) {
+        return copyRawEntries(getLimelightNTDoubleArray(limelightName, "rawdetections"), RAW_DETECTION_STRIDE, out);
+    }
+
+    private static int copyRawEntries(double[] values, int stride, double[] out) {
+        if (values.length % stride != 0) {
+            return 0;
+        }
+        int count = Math.min(values.length / stride, out.length / stride);
+        System.arraycopy(values, 0, out, 0, count * stride);
+        return count;
+    }
+
     /**
      * Prints detailed information about a PoseEstimate to standard output.
      * Includes timestamp, latency, tag count, tag span, average tag distance,
@@ -865,7 +1114,7 @@ public class LimelightHelpers {
     }
 
     public static NetworkTable getLimelightNTTable(String tableName) {
-        return NetworkTableInstance.getDefault().getTable(sanitizeName(tableName));
+        return getNTHandles(tableName).table;
     }
 
     public static void Flush() {
@@ -873,45 +1122,50 @@ public class LimelightHelpers {
     }
 
     public static NetworkTableEntry getLimelightNTTableEntry(String tableName, String entryName) {
-        return getLimelightNTTable(tableName).getEntry(entryName);
+        return getNTHandles(tableName).entry(entryName);
+    }
+
+    public static DoubleEntry getLimelightDoubleEntry(String tableName, String entryName) {
+        return getNTHandles(tableName).doubleEntry(entryName);
     }
 
     public static DoubleArrayEntry getLimelightDoubleArrayEntry(String tableName, String entryName) {
-        String key = tableName + "/" + entryName;
-        return doubleArrayEntries.computeIfAbsent(key, k -> {
-            NetworkTable table = getLimelightNTTable(tableName);
-            return table.getDoubleArrayTopic(entryName).getEntry(new double[0]);
-        });
+        return getNTHandles(tableName).doubleArrayEntry(entryName);
+    }
+
+    public static StringEntry getLimelightStringEntry(String tableName, String entryName) {
+        return getNTHandles(tableName).stringEntry(entryName);
     }
 
     public static double getLimelightNTDouble(String tableName, String entryName) {
-        return getLimelightNTTableEntry(tableName, entryName).getDouble(0.0);
+        return getLimelightDoubleEntry(tableName, entryName).get();
     }
 
     public static void setLimelightNTDouble(String tableName, String entryName, double val) {
-        getLimelightNTTableEntry(tableName, entryName).setDouble(val);
+        getLimelightDoubleEntry(tableName, entryName).set(val);
     }
 
     public static void setLimelightNTDoubleArray(String tableName, String entryName, double[] val) {
-        getLimelightNTTableEntry(tableName, entryName).setDoubleArray(val);
+        getLimelightDoubleArrayEntry(tableName, entryName).set(val);
     }
 
     public static double[] getLimelightNTDoubleArray(String tableName, String entryName) {
-        return getLimelightNTTableEntry(tableName, entryName).getDoubleArray(new double[0]);
+        return getLimelightDoubleArrayEntry(tableName, entryName).get();
     }
 
 
     public static String getLimelightNTString(String tableName, String entryName) {
-        return getLimelightNTTableEntry(tableName, entryName).getString("");
+        return getLimelightStringEntry(tableName, entryName).get();
     }
 
     public static String[] getLimelightNTStringArray(String tableName, String entryName) {
-        return getLimelightNTTableEntry(tableName, entryName).getStringArray(new String[0]);
+        return getLimelightNTTableEntry(tableName, entryName).getStringArray(EMPTY_STRING_ARRAY);
     }
 
 
     public static URL getLimelightURLString(String tableName, String request) {
-        String urlString = "http://" + sanitizeName(tableName) + ".local:5807/" + request;
+        String host = httpHostOverride != null ? httpHostOverride : sanitizeName(tableName) + ".local:5807";
+        String urlString = "http://" + host + "/" + request;
         URL url;
         try {
             url = new URL(urlString);
@@ -1271,6 +1525,17 @@ public class LimelightHelpers {
         return getBotPoseEstimate(limelightName, "botpose_wpiblue", false);
     }
 
+    /**
+     * Allocation-free variant of {@link #getBotPoseEstimate_wpiBlue(String)} that decodes into a caller-owned estimate.
+     *
+     * @param limelightName
+     * @param out Estimate to overwrite
+     * @return true if an estimate was available
+     */
+    public static boolean getBotPoseEstimate_wpiBlue(String limelightName, MutablePoseEstimate out) {
+        return getBotPoseEstimate(limelightName, "botpose_wpiblue", false, out);
+    }
+
     /**
      * Gets the MegaTag2 Pose2d and timestamp for use with WPILib pose estimator (addVisionMeasurement) in the WPILib Blue alliance coordinate system.
      * Make sure you are calling setRobotOrientation() before calling this method.
@@ -1282,6 +1547,40 @@ public class LimelightHelpers {
         return getBotPoseEstimate(limelightName, "botpose_orb_wpiblue", true);
     }
 
+    /**
+     * Allocation-free variant of {@link #getBotPoseEstimate_wpiBlue_MegaTag2(String)} that decodes into a caller-owned estimate.
+     *
+     * @param limelightName
+     * @param out Estimate to overwrite
+     * @return true if an estimate was available
+     */
+    public static boolean getBotPoseEstimate_wpiBlue_MegaTag2(String limelightName, MutablePoseEstimate out) {
+        return getBotPoseEstimate(limelightName, "botpose_orb_wpiblue", true, out);
+    }
+
+    /**
+     * Subscribes to every MegaTag1 estimate in the WPILib Blue alliance coordinate system, see {@link BotPoseSubscriber}.
+     *
+     * @param limelightName
+     * @param queueDepth Number of estimates kept between reads
+     * @return
+     */
+    public static BotPoseSubscriber subscribeBotPoseEstimate_wpiBlue(String limelightName, int queueDepth) {
+        return new BotPoseSubscriber(limelightName, "botpose_wpiblue", false, queueDepth);
+    }
+
+    /**
+     * Subscribes to every MegaTag2 estimate in the WPILib Blue alliance coordinate system, see {@link BotPoseSubscriber}.
+     * Make sure you are calling setRobotOrientation() every loop.
+     *
+     * @param limelightName
+     * @param queueDepth Number of estimates kept between reads
+     * @return
+     */
+    public static BotPoseSubscriber subscribeBotPoseEstimate_wpiBlue_MegaTag2(String limelightName, int queueDepth) {
+        return new BotPoseSubscriber(limelightName, "botpose_orb_wpiblue", true, queueDepth);
+    }
+
     /**
      * Gets the Pose2d for easy use with Odometry vision pose estimator
      * (addVisionMeasurement)
@@ -1306,6 +1605,17 @@ public class LimelightHelpers {
         return getBotPoseEstimate(limelightName, "botpose_wpired", false);
     }
 
+    /**
+     * Allocation-free variant of {@link #getBotPoseEstimate_wpiRed(String)} that decodes into a caller-owned estimate.
+     *
+     * @param limelightName
+     * @param out Estimate to overwrite
+     * @return true if an estimate was available
+     */
+    public static boolean getBotPoseEstimate_wpiRed(String limelightName, MutablePoseEstimate out) {
+        return getBotPoseEstimate(limelightName, "botpose_wpired", false, out);
+    }
+
     /**
      * Gets the Pose2d and timestamp for use with WPILib pose estimator (addVisionMeasurement) when you are on the RED
      * alliance
@@ -1316,6 +1626,17 @@ public class LimelightHelpers {
         return getBotPoseEstimate(limelightName, "botpose_orb_wpired", true);
     }
 
+    /**
+     * Allocation-free variant of {@link #getBotPoseEstimate_wpiRed_MegaTag2(String)} that decodes into a caller-owned estimate.
+     *
+     * @param limelightName
+     * @param out Estimate to overwrite
+     * @return true if an estimate was available
+     */
+    public static boolean getBotPoseEstimate_wpiRed_MegaTag2(String limelightName, MutablePoseEstimate out) {
+        return getBotPoseEstimate(limelightName, "botpose_orb_wpired", true, out);
+    }
+
     /**
      * Gets the Pose2d for easy use with Odometry vision pose estimator
      * (addVisionMeasurement)
@@ -1454,11 +1775,14 @@ public class LimelightHelpers {
         SetRobotOrientation_INTERNAL(limelightName, yaw, yawRate, pitch, pitchRate, roll, rollRate, false);
     }
 
+    private static final ThreadLocal<double[]> orientationEntries = ThreadLocal.withInitial(() -> new double[6]);
+
     private static void SetRobotOrientation_INTERNAL(String limelightName, double yaw, double yawRate,
                                                      double pitch, double pitchRate,
                                                      double roll, double rollRate, boolean flush) {
 
-        double[] entries = new double[6];
+        // NT copies the values on set, so the array can be reused by every call on this thread
+        double[] entries = orientationEntries.get();
         entries[0] = yaw;
         entries[1] = yawRate;
         entries[2] = pitch;
@@ -1585,20 +1909,111 @@ public class LimelightHelpers {
     /////
 
     /**
-     * Asynchronously take snapshot.
+     * Daemon pool for Limelight HTTP requests, kept off the common ForkJoin pool so that an unreachable coprocessor
+     * can't starve anything else. Requests beyond the queue capacity fail immediately.
      */
-    public static CompletableFuture<Boolean> takeSnapshot(String tableName, String snapshotName) {
-        return CompletableFuture.supplyAsync(() -> {
-            return SYNCH_TAKESNAPSHOT(tableName, snapshotName);
+    static final int HTTP_THREADS = 2;
+    static final int HTTP_QUEUE_CAPACITY = 8;
+    private static final ThreadPoolExecutor httpExecutor = createHTTPExecutor();
+
+    private static final Map<String, CompletableFuture<Boolean>> pendingSnapshots = new ConcurrentHashMap<>();
+    private static final AtomicInteger httpRequestsInFlight = new AtomicInteger();
+    private static final AtomicLong httpRequestsFailed = new AtomicLong();
+
+    private static volatile int httpConnectTimeoutMs = 500;
+    private static volatile int httpReadTimeoutMs = 2000;
+
+    // host:port that replaces every Limelight's address when set, so tests can point requests at a local server
+    static volatile String httpHostOverride = null;
+
+    private static ThreadPoolExecutor createHTTPExecutor() {
+        AtomicInteger threadCount = new AtomicInteger();
+        ThreadPoolExecutor executor = new ThreadPoolExecutor(HTTP_THREADS, HTTP_THREADS, 30, TimeUnit.SECONDS, new ArrayBlockingQueue<>(HTTP_QUEUE_CAPACITY), runnable -> {
+            Thread thread = new Thread(runnable, "LimelightHTTP-" + threadCount.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
         });
+        executor.allowCoreThreadTimeOut(true);
+        return executor;
+    }
+
+    /**
+     * Sets the connect and read timeouts used by Limelight HTTP requests.
+     * @param connectTimeoutMs Connect timeout in milliseconds
+     * @param readTimeoutMs Read timeout in milliseconds
+     */
+    public static void setHTTPTimeouts(int connectTimeoutMs, int readTimeoutMs) {
+        httpConnectTimeoutMs = connectTimeoutMs;
+        httpReadTimeoutMs = readTimeoutMs;
+    }
+
+    /**
+     * @return Number of Limelight HTTP requests currently queued or running
+     */
+    public static int getHTTPRequestsInFlight() {
+        return httpRequestsInFlight.get();
+    }
+
+    /**
+     * @return Number of Limelight HTTP requests that failed, timed out or were rejected since startup
+     */
+    public static long getHTTPRequestsFailed() {
+        return httpRequestsFailed.get();
+    }
+
+    /**
+     * Asynchronously take snapshot. While a snapshot with the same name is still pending on the same camera, repeated
+     * requests share its result instead of queueing another request.
+     */
+    public static CompletableFuture<Boolean> takeSnapshot(String tableName, String snapshotName) {
+        String key = sanitizeName(tableName) + "/" + (snapshotName == null ? "" : snapshotName);
+        CompletableFuture<Boolean> pending = pendingSnapshots.get(key);
+        if (pending != null) {
+            return pending;
+        }
+
+        CompletableFuture<Boolean> future = new CompletableFuture<>();
+        pending = pendingSnapshots.putIfAbsent(key, future);
+        if (pending != null) {
+            return pending;
+        }
+        future.whenComplete((ok, e) -> pendingSnapshots.remove(key, future));
+
+        httpRequestsInFlight.incrementAndGet();
+        try {
+            httpExecutor.execute(() -> {
+                boolean ok = false;
+                try {
+                    ok = SYNCH_TAKESNAPSHOT(tableName, snapshotName);
+                } finally {
+                    httpRequestsInFlight.decrementAndGet();
+                    if (!ok) {
+                        httpRequestsFailed.incrementAndGet();
+                    }
+                    future.complete(ok);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            httpRequestsInFlight.decrementAndGet();
+            httpRequestsFailed.incrementAndGet();
+            System.err.println("LL HTTP queue full, dropping snapshot request");
+            future.complete(false);
+        }
+        return future;
     }
 
     private static boolean SYNCH_TAKESNAPSHOT(String tableName, String snapshotName) {
         URL url = getLimelightURLString(tableName, "capturesnapshot");
+        if (url == null) {
+            return false;
+        }
+        HttpURLConnection connection = null;
         try {
-            HttpURLConnection connection = (HttpURLConnection) url.openConnection();
+            connection = (HttpURLConnection) url.openConnection();
+            connection.setConnectTimeout(httpConnectTimeoutMs);
+            connection.setReadTimeout(httpReadTimeoutMs);
             connection.setRequestMethod("GET");
-            if (snapshotName != null && snapshotName != "") {
+            if (snapshotName != null && !snapshotName.isEmpty()) {
                 connection.setRequestProperty("snapname", snapshotName);
             }
 
@@ -1610,6 +2025,10 @@ public class LimelightHelpers {
             }
         } catch (IOException e) {
             System.err.println(e.getMessage());
+        } finally {
+            if (connection != null) {
+                connection.disconnect();
+            }
         }
         return false;
     }
@@ -0,0 +1,287 @@
+// Copyright (c) FIRST and other WPILib contributors.
+// Open Source Software; you can modify and/or share it under the terms of
+// the WPILib BSD license file in the root directory of this project.
+
+package frc.robot.utils;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.EnumSet;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+
+import edu.wpi.first.networktables.StringEntry;
+
+
+/**
+ * A streaming alternative to {@link LimelightHelpers#getLatestResults(String)}.
+ *
+ * <p>Instead of Jackson databind allocating a new {@link LimelightHelpers.LimelightResults} graph every call, this
+ * walks the "json" entry with a {@link JsonParser} and fills a reusable, pre-sized {@link Results} in place. Sections
+ * that are not needed can be skipped entirely, and {@link #update()} does not parse at all if the entry has not
+ * changed since the previous call.
+ *
+ * <p>Create one parser per Limelight and only use it from one thread.
+ */
+public class LimelightResultsParser {
+  /** Target arrays of the results that can be skipped. */
+  public enum Section {
+    RETRO, FIDUCIAL, CLASSIFIER, DETECTOR, BARCODE
+  }
+
+  /** Maximum number of targets kept per section, extra targets are ignored. */
+  public static final int MAX_TARGETS = 32;
+
+  private static final JsonFactory factory = new JsonFactory();
+
+  private final StringEntry jsonEntry;
+  private final EnumSet<Section> skippedSections;
+  private final Results results = new Results();
+  private long lastChange = -1;
+
+
+  /**
+   * Creates a new LimelightResultsParser.
+   *
+   * @param limelightName   Name of the Limelight camera.
+   * @param skippedSections Target sections that are not parsed, e.g. {@code EnumSet.of(Section.RETRO, Section.BARCODE)}.
+   */
+  public LimelightResultsParser(String limelightName, EnumSet<Section> skippedSections) {
+    this.jsonEntry = LimelightHelpers.getLimelightStringEntry(limelightName, "json");
+    this.skippedSections = EnumSet.copyOf(skippedSections);
+  }
+
+
+  /**
+   * Parses the latest JSON results if they changed since the previous call.
+   *
+   * @return true if new results were parsed into {@link #getResults()}, false if they are unchanged.
+   */
+  public boolean update() {
+    long change = jsonEntry.getLastChange();
+    if (change == lastChange) return false;
+    lastChange = change;
+
+    parse(jsonEntry.get());
+    return true;
+  }
+
+
+  /**
+   * Returns the reusable results object. Its contents are overwritten by the next parse.
+   *
+   * @return The {@link Results}.
+   */
+  public Results getResults() {
+    return results;
+  }
+
+
+  /**
+   * Parses a JSON results document into {@link #getResults()}. On malformed input {@link Results#error} is set and
+   * the fields parsed up to that point are kept.
+   *
+   * @param json The Limelight JSON results.
+   */
+  public void parse(String json) {
+    long start = System.nanoTime();
+    results.reset();
+
+    try (JsonParser parser = factory.createParser(json)) {
+      if (parser.nextToken() != JsonToken.START_OBJECT) {
+        results.error = "lljson error: expected an object";
+      } else {
+        parseResults(parser);
+      }
+    } catch (IOException e) {
+      results.error = "lljson error: " + e.getMessage();
+    }
+
+    results.latency_jsonParse = (System.nanoTime() - start) * .000001;
+  }
+
+
+  private void parseResults(JsonParser parser) throws IOException {
+    while (parser.nextToken() == JsonToken.FIELD_NAME) {
+      String field = parser.currentName();
+      JsonToken token = parser.nextToken();
+
+      switch (field) {
+        case "pID" -> results.pipelineID = parser.getValueAsDouble();
+        case "tl" -> results.latency_pipeline = parser.getValueAsDouble();
+        case "cl" -> results.latency_capture = parser.getValueAsDouble();
+        case "ts" -> results.timestamp_LIMELIGHT_publish = parser.getValueAsDouble();
+        case "ts_rio" -> results.timestamp_RIOFPGA_capture = parser.getValueAsDouble();
+        case "v" -> results.valid = token == JsonToken.VALUE_TRUE || (token.isNumeric() && parser.getDoubleValue() != 0);
+        case "botpose" -> readDoubleArray(parser, results.botpose);
+        case "botpose_wpired" -> readDoubleArray(parser, results.botpose_wpired);
+        case "botpose_wpiblue" -> readDoubleArray(parser, results.botpose_wpiblue);
+        case "botpose_tagcount" -> results.botpose_tagcount = parser.getValueAsDouble();
+        case "botpose_span" -> results.botpose_span = parser.getValueAsDouble();
+        case "botpose_avgdist" -> results.botpose_avgdist = parser.getValueAsDouble();
+        case "botpose_avgarea" -> results.botpose_avgarea = parser.getValueAsDouble();
+        case "t6c_rs" -> readDoubleArray(parser, results.camerapose_robotspace);
+        case "Retro" -> results.retroCount = readTargets(parser, Section.RETRO, results.retro);
+        case "Fiducial" -> results.fiducialCount = readTargets(parser, Section.FIDUCIAL, results.fiducials);
+        case "Classifier" -> results.classifierCount = readTargets(parser, Section.CLASSIFIER, results.classifiers);
+        case "Detector" -> results.detectorCount = readTargets(parser, Section.DETECTOR, results.detectors);
+        case "Barcode" -> results.barcodeCount = readTargets(parser, Section.BARCODE, results.barcodes);
+        default -> parser.skipChildren();
+      }
+    }
+  }
+
+
+  /**
+   * Reads an array of target objects into the pool, unless the section is skipped.
+   *
+   * @return The number of targets read.
+   */
+  private int readTargets(JsonParser parser, Section section, Target[] pool) throws IOException {
+    if (parser.currentToken() != JsonToken.START_ARRAY || skippedSections.contains(section)) {
+      parser.skipChildren();
+      return 0;
+    }
+
+    int count = 0;
+    while (parser.nextToken() == JsonToken.START_OBJECT) {
+      if (count == pool.length) {
+        parser.skipChildren();
+        continue;
+      }
+
+      Target target = pool[count++];
+      target.reset();
+      while (parser.nextToken() == JsonToken.FIELD_NAME) {
+        String field = parser.currentName();
+        parser.nextToken();
+
+        switch (field) {
+          case "fID", "classID" -> target.id = parser.getValueAsInt();
+          case "tx" -> target.tx = parser.getValueAsDouble();
+          case "ty" -> target.ty = parser.getValueAsDouble();
+          case "ta" -> target.ta = parser.getValueAsDouble();
+          case "txp" -> target.tx_pixels = parser.getValueAsDouble();
+          case "typ" -> target.ty_pixels = parser.getValueAsDouble();
+          case "tx_nocross" -> target.tx_nocrosshair = parser.getValueAsDouble();
+          case "ty_nocross" -> target.ty_nocrosshair = parser.getValueAsDouble();
+          case "conf" -> target.confidence = parser.getValueAsDouble();
+          case "t6c_ts" -> readDoubleArray(parser, target.cameraPose_TargetSpace);
+          case "t6r_fs" -> readDoubleArray(parser, target.robotPose_FieldSpace);
+          case "t6r_ts" -> readDoubleArray(parser, target.robotPose_TargetSpace);
+          case "t6t_cs" -> readDoubleArray(parser, target.targetPose_CameraSpace);
+          case "t6t_rs" -> readDoubleArray(parser, target.targetPose_RobotSpace);
+          default -> parser.skipChildren();
+        }
+      }
+    }
+    return count;
+  }
+
+
+  /**
+   * Reads a JSON array of numbers into dest, ignoring values past its length. Anything else is skipped.
+   */
+  private static void readDoubleArray(JsonParser parser, double[] dest) throws IOException {
+    if (parser.currentToken() != JsonToken.START_ARRAY) {
+      parser.skipChildren();
+      return;
+    }
+
+    int i = 0;
+    JsonToken token;
+    while ((token = parser.nextToken()) != JsonToken.END_ARRAY && token != null) {
+      if (token.isNumeric() && i < dest.length) {
+        dest[i++] = parser.getDoubleValue();
+      } else {
+        parser.skipChildren();
+      }
+    }
+  }
+
+
+  /**
+   * One target from any section. Fields a section does not report keep their reset value.
+   */
+  public static final class Target {
+    /** Fiducial ID, or class ID for neural targets. -1 if not reported. */
+    public int id;
+    public double tx, ty, ta;
+    public double tx_pixels, ty_pixels;
+    public double tx_nocrosshair, ty_nocrosshair;
+    public double confidence;
+
+    public final double[] cameraPose_TargetSpace = new double[6];
+    public final double[] robotPose_FieldSpace = new double[6];
+    public final double[] robotPose_TargetSpace = new double[6];
+    public final double[] targetPose_CameraSpace = new double[6];
+    public final double[] targetPose_RobotSpace = new double[6];
+
+    private void reset() {
+      id = -1;
+      tx = ty = ta = 0;
+      tx_pixels = ty_pixels = 0;
+      tx_nocrosshair = ty_nocrosshair = 0;
+      confidence = 0;
+      Arrays.fill(cameraPose_TargetSpace, 0);
+      Arrays.fill(robotPose_FieldSpace, 0);
+      Arrays.fill(robotPose_TargetSpace, 0);
+      Arrays.fill(targetPose_CameraSpace, 0);
+      Arrays.fill(targetPose_RobotSpace, 0);
+    }
+  }
+
+
+  /**
+   * Reusable Limelight results, mirroring the fields of {@link LimelightHelpers.LimelightResults}. Each target section
+   * is a fixed pool of {@link #MAX_TARGETS} targets, of which only the first count entries are valid.
+   */
+  public static final class Results {
+    public String error;
+
+    public double pipelineID;
+    public double latency_pipeline;
+    public double latency_capture;
+    public double latency_jsonParse;
+    public double timestamp_LIMELIGHT_publish;
+    public double timestamp_RIOFPGA_capture;
+    public boolean valid;
+
+    public final double[] botpose = new double[6];
+    public final double[] botpose_wpired = new double[6];
+    public final double[] botpose_wpiblue = new double[6];
+    public double botpose_tagcount;
+    public double botpose_span;
+    public double botpose_avgdist;
+    public double botpose_avgarea;
+    public final double[] camerapose_robotspace = new double[6];
+
+    public final Target[] retro = newPool();
+    public final Target[] fiducials = newPool();
+    public final Target[] classifiers = newPool();
+    public final Target[] detectors = newPool();
+    public final Target[] barcodes = newPool();
+    public int retroCount, fiducialCount, classifierCount, detectorCount, barcodeCount;
+
+    private static Target[] newPool() {
+      Target[] pool = new Target[MAX_TARGETS];
+      for (int i = 0; i < pool.length; i++) pool[i] = new Target();
+      return pool;
+    }
+
+    private void reset() {
+      error = null;
+      pipelineID = latency_pipeline = latency_capture = 0;
+      timestamp_LIMELIGHT_publish = timestamp_RIOFPGA_capture = 0;
+      valid = false;
+      Arrays.fill(botpose, 0);
+      Arrays.fill(botpose_wpired, 0);
+      Arrays.fill(botpose_wpiblue, 0);
+      botpose_tagcount = botpose_span = botpose_avgdist = botpose_avgarea = 0;
+      Arrays.fill(camerapose_robotspace, 0);
+      retroCount = fiducialCount = classifierCount = detectorCount = barcodeCount = 0;
+    }
+  }
+}
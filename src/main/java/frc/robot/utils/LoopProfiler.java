@@ -0,0 +1,204 @@
+// Copyright (c) FIRST and other WPILib contributors.
+// Open Source Software; you can modify and/or share it under the terms of
+// the WPILib BSD license file in the root directory of this project.
+
+package frc.robot.utils;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import edu.wpi.first.networktables.DoublePublisher;
+import edu.wpi.first.networktables.NetworkTable;
+import edu.wpi.first.networktables.NetworkTableInstance;
+import edu.wpi.first.util.datalog.DataLog;
+import edu.wpi.first.util.datalog.DoubleLogEntry;
+import edu.wpi.first.wpilibj.DataLogManager;
+import edu.wpi.first.wpilibj2.command.Command;
+import edu.wpi.first.wpilibj2.command.WrapperCommand;
+
+
+/**
+ * Measures how long subsystem periodic() and command execute() calls take.
+ *
+ * <p>Each measured block is a {@link Section}, registered once at startup. Durations are recorded into a fixed-bucket
+ * histogram and the p50/p95/p99/max (in ms) of every section are published to NetworkTables under "LoopProfiler" and
+ * to the DataLog once every {@link #PUBLISH_PERIOD_LOOPS} loops, after which the histograms are cleared. Recording and
+ * publishing do not allocate, so the profiler does not perturb what it measures.
+ */
+public final class LoopProfiler {
+  /** Number of loops between publishes (1 s at 50 Hz). */
+  public static final int PUBLISH_PERIOD_LOOPS = 50;
+
+  // Histogram layout: 4 buckets per power of two of microseconds, covering up to ~0.5 s
+  private static final int SUB_BUCKETS = 4;
+  private static final int BUCKET_COUNT = 72;
+
+  private static final List<Section> sections = new ArrayList<>();
+  private static final Map<String, Section> sectionsByName = new HashMap<>();
+  private static final NetworkTable table = NetworkTableInstance.getDefault().getTable("LoopProfiler");
+  private static int loopsSincePublish = 0;
+
+  private LoopProfiler() {}
+
+
+  /**
+   * Returns the section with the given name, creating it if needed. Should only be called during initialization.
+   *
+   * @param name Name the section is published under, e.g. "PVCamera.periodic()".
+   * @return The {@link Section}.
+   */
+  public static synchronized Section section(String name) {
+    Section section = sectionsByName.get(name);
+    if (section == null) {
+      section = new Section(name);
+      sectionsByName.put(name, section);
+      sections.add(section);
+    }
+    return section;
+  }
+
+
+  /**
+   * Wraps a command so that its execute() is timed under "&lt;command name&gt;.execute()".
+   *
+   * @param command The command to profile.
+   * @return The wrapped command, or null if command is null.
+   */
+  public static Command profile(Command command) {
+    if (command == null) return null;
+
+    Section section = section(command.getName() + ".execute()");
+    return new WrapperCommand(command) {
+      @Override
+      public void execute() {
+        section.start();
+        m_command.execute();
+        section.stop();
+      }
+    };
+  }
+
+
+  /**
+   * Publishes and clears all histograms once every {@link #PUBLISH_PERIOD_LOOPS} calls. Should be called once per loop
+   * from the main robot thread.
+   */
+  public static void publish() {
+    if (++loopsSincePublish < PUBLISH_PERIOD_LOOPS) return;
+    loopsSincePublish = 0;
+
+    for (int i = 0; i < sections.size(); i++) {
+      sections.get(i).publishAndReset();
+    }
+  }
+
+
+  /**
+   * Maps a duration in microseconds to its histogram bucket.
+   */
+  private static int bucketOf(long micros) {
+    if (micros < SUB_BUCKETS) return (int) Math.max(micros, 0);
+
+    int msb = 63 - Long.numberOfLeadingZeros(micros);
+    int sub = (int) (micros >>> (msb - 2)) & (SUB_BUCKETS - 1);
+    return Math.min((msb - 1) * SUB_BUCKETS + sub, BUCKET_COUNT - 1);
+  }
+
+
+  /**
+   * Returns the upper bound of a histogram bucket in microseconds.
+   */
+  private static long bucketUpperBound(int bucket) {
+    if (bucket < SUB_BUCKETS) return bucket + 1;
+
+    int msb = bucket / SUB_BUCKETS + 1;
+    int sub = bucket % SUB_BUCKETS;
+    long lower = (long) (SUB_BUCKETS + sub) << (msb - 2);
+    return lower + (1L << (msb - 2));
+  }
+
+
+  /**
+   * A single timed block of code with its own histogram. Only use from the main robot thread.
+   */
+  public static final class Section {
+    private final long[] buckets = new long[BUCKET_COUNT];
+    private long count = 0;
+    private long maxNanos = 0;
+    private long startNanos = 0;
+
+    private final DoublePublisher p50Pub, p95Pub, p99Pub, maxPub;
+    private final DoubleLogEntry p50Log, p95Log, p99Log, maxLog;
+
+
+    private Section(String name) {
+      NetworkTable sectionTable = table.getSubTable(name);
+      p50Pub = sectionTable.getDoubleTopic("p50 ms").publish();
+      p95Pub = sectionTable.getDoubleTopic("p95 ms").publish();
+      p99Pub = sectionTable.getDoubleTopic("p99 ms").publish();
+      maxPub = sectionTable.getDoubleTopic("max ms").publish();
+
+      DataLog log = DataLogManager.getLog();
+      String prefix = "LoopProfiler/" + name + "/";
+      p50Log = new DoubleLogEntry(log, prefix + "p50 ms");
+      p95Log = new DoubleLogEntry(log, prefix + "p95 ms");
+      p99Log = new DoubleLogEntry(log, prefix + "p99 ms");
+      maxLog = new DoubleLogEntry(log, prefix + "max ms");
+    }
+
+
+    /** Marks the start of the timed block. */
+    public void start() {
+      startNanos = System.nanoTime();
+    }
+
+
+    /** Marks the end of the timed block and records its duration. */
+    public void stop() {
+      long elapsed = System.nanoTime() - startNanos;
+      buckets[bucketOf(elapsed / 1000)]++;
+      count++;
+      if (elapsed > maxNanos) maxNanos = elapsed;
+    }
+
+
+    /**
+     * Returns the upper bound, in ms, of the bucket containing the given percentile.
+     */
+    private double percentileMillis(double percentile) {
+      long rank = (long) Math.ceil(percentile * count);
+      long seen = 0;
+      for (int i = 0; i < BUCKET_COUNT; i++) {
+        seen += buckets[i];
+        if (seen >= rank) return bucketUpperBound(i) / 1000.0;
+      }
+      return maxNanos / 1e6;
+    }
+
+
+    private void publishAndReset() {
+      if (count == 0) return;
+
+      double p50 = percentileMillis(0.50);
+      double p95 = percentileMillis(0.95);
+      double p99 = percentileMillis(0.99);
+      double max = maxNanos / 1e6;
+
+      p50Pub.set(p50);
+      p95Pub.set(p95);
+      p99Pub.set(p99);
+      maxPub.set(max);
+
+      p50Log.append(p50);
+      p95Log.append(p95);
+      p99Log.append(p99);
+      maxLog.append(max);
+
+      for (int i = 0; i < BUCKET_COUNT; i++) buckets[i] = 0;
+      count = 0;
+      maxNanos = 0;
+    }
+  }
+}
@@ -0,0 +1,399 @@
+// Copyright (c) FIRST and other WPILib contributors.
+// Open Source Software; you can modify and/or share it under the terms of
+// the WPILib BSD license file in the root directory of this project.
+
+package frc.robot.utils;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.zip.CRC32;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+
+import edu.wpi.first.wpilibj.DriverStation;
+import edu.wpi.first.wpilibj.Filesystem;
+
+
+/**
+ * The PathPlanner navgrid as a packed obstacle bitset with a precomputed distance-to-obstacle field.
+ *
+ * <p>The navgrid JSON (a field size, a node size and rows of booleans, true meaning obstacle) is parsed once with a
+ * streaming parser. Cell (row, column) covers x in [column, column + 1) and y in [row, row + 1) node sizes, like
+ * PathPlanner's pathfinder. Obstacles are stored one bit per cell, and for every cell the Euclidean distance from its
+ * center to the nearest obstacle cell center is computed with an exact two-pass distance transform, so
+ * {@link #isObstacle} and {@link #getClearance} are O(1) array lookups.
+ *
+ * <p>Because parsing and the transform only depend on the JSON, the result can be cached in a binary file next to it,
+ * which is used instead as long as the JSON's checksum matches. Instances are immutable and safe to share between
+ * threads.
+ */
+public final class NavGrid {
+  private static final int CACHE_MAGIC = 0x4E415647;  // "NAVG"
+  private static final int CACHE_VERSION = 1;
+  private static final double FAR = 1e20;              // squared distance of cells with no obstacle in a 1D pass
+
+  private static final JsonFactory factory = new JsonFactory();
+
+  private final int rows, columns;
+  private final double nodeSize, fieldLength, fieldWidth;
+  private final long[] obstacles;
+  private final float[] clearance;
+
+
+  private NavGrid(int rows, int columns, double nodeSize, double fieldLength, double fieldWidth, long[] obstacles, float[] clearance) {
+    this.rows = rows;
+    this.columns = columns;
+    this.nodeSize = nodeSize;
+    this.fieldLength = fieldLength;
+    this.fieldWidth = fieldWidth;
+    this.obstacles = obstacles;
+    this.clearance = clearance;
+  }
+
+
+  /**
+   * Loads "pathplanner/navgrid.json" from the deploy directory, cached in "pathplanner/navgrid.bin".
+   *
+   * @return The {@link NavGrid}.
+   * @throws IOException If the navgrid cannot be read or parsed.
+   */
+  public static NavGrid loadDeployed() throws IOException {
+    File directory = new File(Filesystem.getDeployDirectory(), "pathplanner");
+    return load(new File(directory, "navgrid.json"), new File(directory, "navgrid.bin"));
+  }
+
+
+  /**
+   * Loads a navgrid, from the cache if it is up to date, otherwise by parsing the JSON and then writing the cache.
+   * A cache that is missing, stale, corrupt or cannot be written is not an error.
+   *
+   * @param json  The navgrid JSON file.
+   * @param cache The binary cache file, or null to always parse.
+   * @return The {@link NavGrid}.
+   * @throws IOException If the JSON cannot be read or parsed.
+   */
+  public static NavGrid load(File json, File cache) throws IOException {
+    byte[] jsonBytes = Files.readAllBytes(json.toPath());
+    CRC32 crc = new CRC32();
+    crc.update(jsonBytes);
+    long checksum = crc.getValue();
+
+    if (cache != null && cache.isFile()) {
+      try {
+        NavGrid grid = readCache(cache, checksum);
+        if (grid != null) return grid;
+      } catch (IOException e) {
+        // Rebuilt below
+      }
+    }
+
+    NavGrid grid = parse(jsonBytes);
+    if (cache != null) {
+      try {
+        grid.writeCache(cache, checksum);
+      } catch (IOException e) {
+        DriverStation.reportWarning("NavGrid: could not write " + cache + ": " + e.getMessage(), false);
+      }
+    }
+    return grid;
+  }
+
+
+  /**
+   * Parses a navgrid from its JSON and computes the distance field.
+   *
+   * @param json The UTF-8 JSON.
+   * @return The {@link NavGrid}.
+   * @throws IOException If the JSON is malformed or the grid is empty or ragged.
+   */
+  public static NavGrid parse(byte[] json) throws IOException {
+    double nodeSize = 0, fieldLength = 0, fieldWidth = 0;
+    List<boolean[]> grid = new ArrayList<>();
+
+    try (JsonParser parser = factory.createParser(json)) {
+      if (parser.nextToken() != JsonToken.START_OBJECT) throw new IOException("NavGrid: expected an object");
+
+      while (parser.nextToken() == JsonToken.FIELD_NAME) {
+        String name = parser.currentName();
+        parser.nextToken();
+        switch (name) {
+          case "nodeSizeMeters" -> nodeSize = parser.getDoubleValue();
+          case "field_size" -> {
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+              String axis = parser.currentName();
+              parser.nextToken();
+              if (axis.equals("x")) fieldLength = parser.getDoubleValue();
+              else if (axis.equals("y")) fieldWidth = parser.getDoubleValue();
+              else parser.skipChildren();
+            }
+          }
+          case "grid" -> {
+            boolean[] row = new boolean[64];
+            while (parser.nextToken() == JsonToken.START_ARRAY) {
+              int count = 0;
+              for (JsonToken token = parser.nextToken(); token != JsonToken.END_ARRAY; token = parser.nextToken()) {
+                if (count == row.length) row = Arrays.copyOf(row, count * 2);
+                row[count++] = token == JsonToken.VALUE_TRUE;
+              }
+              grid.add(Arrays.copyOf(row, count));
+            }
+          }
+          default -> parser.skipChildren();
+        }
+      }
+    }
+
+    int rows = grid.size();
+    int columns = rows > 0 ? grid.get(0).length : 0;
+    if (rows == 0 || columns == 0 || nodeSize <= 0) throw new IOException("NavGrid: empty grid");
+
+    long[] obstacles = new long[(rows * columns + 63) >>> 6];
+    for (int row = 0; row < rows; row++) {
+      boolean[] cells = grid.get(row);
+      if (cells.length != columns) throw new IOException("NavGrid: row " + row + " has " + cells.length + " columns, expected " + columns);
+      for (int column = 0; column < columns; column++) {
+        int i = row * columns + column;
+        if (cells[column]) obstacles[i >>> 6] |= 1L << (i & 63);
+      }
+    }
+
+    return new NavGrid(rows, columns, nodeSize, fieldLength, fieldWidth, obstacles, distanceTransform(obstacles, rows, columns, nodeSize));
+  }
+
+
+  /**
+   * Computes the distance from every cell center to the nearest obstacle cell center in m, with the separable exact
+   * Euclidean distance transform of Felzenszwalb and Huttenlocher: squared distances along each column, then along
+   * each row.
+   */
+  private static float[] distanceTransform(long[] obstacles, int rows, int columns, double nodeSize) {
+    int n = Math.max(rows, columns);
+    double[] f = new double[n];
+    double[] d = new double[n];
+    int[] v = new int[n];
+    double[] z = new double[n + 1];
+
+    double[] squared = new double[rows * columns];
+    for (int column = 0; column < columns; column++) {
+      for (int row = 0; row < rows; row++) {
+        int i = row * columns + column;
+        f[row] = (obstacles[i >>> 6] & (1L << (i & 63))) != 0 ? 0 : FAR;
+      }
+      distanceTransform1d(f, rows, d, v, z);
+      for (int row = 0; row < rows; row++) squared[row * columns + column] = d[row];
+    }
+
+    float[] distances = new float[rows * columns];
+    for (int row = 0; row < rows; row++) {
+      System.arraycopy(squared, row * columns, f, 0, columns);
+      distanceTransform1d(f, columns, d, v, z);
+      for (int column = 0; column < columns; column++) distances[row * columns + column] = (float) (Math.sqrt(d[column]) * nodeSize);
+    }
+    return distances;
+  }
+
+
+  /**
+   * 1D squared distance transform: d[q] = min over p of (q - p)^2 + f[p], as the lower envelope of parabolas rooted at
+   * each p. v holds the envelope's parabolas and z the boundaries between them.
+   */
+  private static void distanceTransform1d(double[] f, int n, double[] d, int[] v, double[] z) {
+    int k = 0;
+    v[0] = 0;
+    z[0] = Double.NEGATIVE_INFINITY;
+    z[1] = Double.POSITIVE_INFINITY;
+    for (int q = 1; q < n; q++) {
+      // z[0] is -infinity, so k never drops below 0
+      double s = intersection(f, q, v[k]);
+      while (s <= z[k]) {
+        k--;
+        s = intersection(f, q, v[k]);
+      }
+      k++;
+      v[k] = q;
+      z[k] = s;
+      z[k + 1] = Double.POSITIVE_INFINITY;
+    }
+
+    k = 0;
+    for (int q = 0; q < n; q++) {
+      while (z[k + 1] < q) k++;
+      double offset = q - v[k];
+      d[q] = offset * offset + f[v[k]];
+    }
+  }
+
+
+  /** Position where the parabolas rooted at q and p intersect. */
+  private static double intersection(double[] f, int q, int p) {
+    return ((f[q] + (double) q * q) - (f[p] + (double) p * p)) / (2.0 * q - 2.0 * p);
+  }
+
+
+  private static NavGrid readCache(File cache, long checksum) throws IOException {
+    try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(cache)))) {
+      if (in.readInt() != CACHE_MAGIC || in.readInt() != CACHE_VERSION || in.readLong() != checksum) return null;
+
+      int rows = in.readInt();
+      int columns = in.readInt();
+      double nodeSize = in.readDouble();
+      double fieldLength = in.readDouble();
+      double fieldWidth = in.readDouble();
+      if (rows <= 0 || columns <= 0) return null;
+
+      long[] obstacles = new long[(rows * columns + 63) >>> 6];
+      for (int i = 0; i < obstacles.length; i++) obstacles[i] = in.readLong();
+      float[] clearance = new float[rows * columns];
+      for (int i = 0; i < clearance.length; i++) clearance[i] = in.readFloat();
+
+      return new NavGrid(rows, columns, nodeSize, fieldLength, fieldWidth, obstacles, clearance);
+    }
+  }
+
+
+  private void writeCache(File cache, long checksum) throws IOException {
+    // Write next to the cache and move it into place, so a partially written cache is never read
+    File temp = new File(cache.getPath() + ".tmp");
+    try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(temp)))) {
+      out.writeInt(CACHE_MAGIC);
+      out.writeInt(CACHE_VERSION);
+      out.writeLong(checksum);
+      out.writeInt(rows);
+      out.writeInt(columns);
+      out.writeDouble(nodeSize);
+      out.writeDouble(fieldLength);
+      out.writeDouble(fieldWidth);
+      for (long word : obstacles) out.writeLong(word);
+      for (float distance : clearance) out.writeFloat(distance);
+    }
+    Files.move(temp.toPath(), cache.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+  }
+
+
+  /** @return Number of rows (along the field's y axis). */
+  public int getRows() {
+    return rows;
+  }
+
+
+  /** @return Number of columns (along the field's x axis). */
+  public int getColumns() {
+    return columns;
+  }
+
+
+  /** @return Number of cells, the size of bitsets indexed row * columns + column. */
+  public int getCellCount() {
+    return rows * columns;
+  }
+
+
+  /** @return Side length of a cell in m. */
+  public double getNodeSize() {
+    return nodeSize;
+  }
+
+
+  /** @return Field length (x) in m. */
+  public double getFieldLength() {
+    return fieldLength;
+  }
+
+
+  /** @return Field width (y) in m. */
+  public double getFieldWidth() {
+    return fieldWidth;
+  }
+
+
+  /** @return Column containing a field x, may be outside the grid. */
+  public int columnOf(double x) {
+    return (int) Math.floor(x / nodeSize);
+  }
+
+
+  /** @return Row containing a field y, may be outside the grid. */
+  public int rowOf(double y) {
+    return (int) Math.floor(y / nodeSize);
+  }
+
+
+  /** @return Field x of the center of a column in m. */
+  public double centerX(int column) {
+    return (column + 0.5) * nodeSize;
+  }
+
+
+  /** @return Field y of the center of a row in m. */
+  public double centerY(int row) {
+    return (row + 0.5) * nodeSize;
+  }
+
+
+  /** @return Whether a cell is inside the grid. */
+  public boolean contains(int row, int column) {
+    return row >= 0 && row < rows && column >= 0 && column < columns;
+  }
+
+
+  /** @return Whether a cell is an obstacle, cells outside the grid are. */
+  public boolean isObstacle(int row, int column) {
+    if (!contains(row, column)) return true;
+    int i = row * columns + column;
+    return (obstacles[i >>> 6] & (1L << (i & 63))) != 0;
+  }
+
+
+  /** @return Whether the cell containing a field position is an obstacle, positions outside the grid are. */
+  public boolean isObstacle(double x, double y) {
+    return isObstacle(rowOf(y), columnOf(x));
+  }
+
+
+  /** @return Distance from a cell's center to the nearest obstacle cell center in m, 0 outside the grid. */
+  public double getClearance(int row, int column) {
+    return contains(row, column) ? clearance[row * columns + column] : 0;
+  }
+
+
+  /** @return Clearance of the cell containing a field position in m, 0 outside the grid. */
+  public double getClearance(double x, double y) {
+    return getClearance(rowOf(y), columnOf(x));
+  }
+
+
+  /**
+   * Sets the bits of every cell overlapping an axis-aligned rectangle, e.g. to mark a dynamic obstacle.
+   *
+   * @param cells Bitset indexed row * columns + column, of at least {@link #getCellCount()} bits.
+   * @param x0    Field x of one corner in m.
+   * @param y0    Field y of one corner in m.
+   * @param x1    Field x of the opposite corner in m.
+   * @param y1    Field y of the opposite corner in m.
+   */
+  public void fillRectangle(long[] cells, double x0, double y0, double x1, double y1) {
+    int rowMin = Math.max(rowOf(Math.min(y0, y1)), 0);
+    int rowMax = Math.min(rowOf(Math.max(y0, y1)), rows - 1);
+    int columnMin = Math.max(columnOf(Math.min(x0, x1)), 0);
+    int columnMax = Math.min(columnOf(Math.max(x0, x1)), columns - 1);
+    for (int row = rowMin; row <= rowMax; row++) {
+      for (int column = columnMin; column <= columnMax; column++) {
+        int i = row * columns + column;
+        cells[i >>> 6] |= 1L << (i & 63);
+      }
+    }
+  }
+}
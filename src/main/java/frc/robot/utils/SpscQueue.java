@@ -0,0 +1,82 @@
+// Copyright (c) FIRST and other WPILib contributors.
+// Open Source Software; you can modify and/or share it under the terms of
+// the WPILib BSD license file in the root directory of this project.
+
+package frc.robot.utils;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+
+/**
+ * A bounded, lock-free queue for handing objects from exactly one producer thread to exactly one consumer thread.
+ *
+ * <p>{@link #offer(Object)} must only be called from the producer thread and {@link #poll()} only from the consumer
+ * thread. Neither call blocks or allocates.
+ *
+ * @param <T> Type of the queued elements.
+ */
+public class SpscQueue<T> {
+  private final Object[] buffer;
+  private final int mask;
+
+  // Next index to read, only written by the consumer
+  private final AtomicLong head = new AtomicLong(0);
+  // Next index to write, only written by the producer
+  private final AtomicLong tail = new AtomicLong(0);
+
+
+  /**
+   * Creates a new SpscQueue.
+   *
+   * @param capacity Maximum number of queued elements, rounded up to a power of two.
+   */
+  public SpscQueue(int capacity) {
+    int size = Integer.highestOneBit(Math.max(capacity, 2) - 1) << 1;
+    buffer = new Object[size];
+    mask = size - 1;
+  }
+
+
+  /**
+   * Adds an element to the queue. Producer thread only.
+   *
+   * @param element The element to add, must not be null.
+   * @return true if the element was added, false if the queue was full.
+   */
+  public boolean offer(T element) {
+    long t = tail.get();
+    if (t - head.get() == buffer.length) return false;
+
+    buffer[(int) (t & mask)] = element;
+    tail.lazySet(t + 1); // Publishes the element to the consumer
+    return true;
+  }
+
+
+  /**
+   * Removes the oldest element from the queue. Consumer thread only.
+   *
+   * @return The oldest element, or null if the queue is empty.
+   */
+  @SuppressWarnings("unchecked")
+  public T poll() {
+    long h = head.get();
+    if (h == tail.get()) return null;
+
+    int index = (int) (h & mask);
+    T element = (T) buffer[index];
+    buffer[index] = null;
+    head.lazySet(h + 1); // Frees the slot for the producer
+    return element;
+  }
+
+
+  /**
+   * Returns whether the queue currently holds no elements.
+   *
+   * @return true if empty.
+   */
+  public boolean isEmpty() {
+    return head.get() == tail.get();
+  }
+}
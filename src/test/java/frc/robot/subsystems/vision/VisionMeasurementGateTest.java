@@ -0,0 +1,110 @@
+// Copyright (c) FIRST and other WPILib contributors.
+// Open Source Software; you can modify and/or share it under the terms of
+// the WPILib BSD license file in the root directory of this project.
+
+package frc.robot.subsystems.vision;
+
+import static frc.robot.Constants.VisionConstants.*;
+import static org.junit.jupiter.api.Assertions.*;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import edu.wpi.first.math.estimator.SwerveDrivePoseEstimator;
+import edu.wpi.first.math.geometry.Pose2d;
+import edu.wpi.first.math.geometry.Rotation2d;
+import edu.wpi.first.math.geometry.Translation2d;
+import edu.wpi.first.math.kinematics.SwerveDriveKinematics;
+import edu.wpi.first.math.kinematics.SwerveModulePosition;
+
+
+/**
+ * Tests {@link VisionMeasurementGate} in front of a real pose estimator, with the robot standing still and vision
+ * reporting a pose far from where odometry starts.
+ */
+class VisionMeasurementGateTest {
+  private static final double FRAME_PERIOD = 0.05;  // in s
+  private static final Pose2d VISION_POSE = new Pose2d(3, 3, Rotation2d.kZero);
+
+  private final SwerveModulePosition[] modulePositions = {
+    new SwerveModulePosition(), new SwerveModulePosition(), new SwerveModulePosition(), new SwerveModulePosition()
+  };
+  private SwerveDrivePoseEstimator estimator;
+  private VisionMeasurementGate gate;
+  private double time = 0;
+
+
+  @BeforeEach
+  void createEstimator() {
+    var kinematics = new SwerveDriveKinematics(
+      new Translation2d(0.3, 0.3), new Translation2d(0.3, -0.3), new Translation2d(-0.3, 0.3), new Translation2d(-0.3, -0.3)
+    );
+    estimator = new SwerveDrivePoseEstimator(
+      kinematics, Rotation2d.kZero, modulePositions, Pose2d.kZero, ODOMETRY_STD_DEVS, kMultiTagStdDevs
+    );
+    gate = new VisionMeasurementGate();
+  }
+
+
+  /** Advances one camera frame and runs an estimate through the gate into the estimator, as PoseEstimatorSubsystem does. */
+  private boolean feed(Pose2d visionPose, int tagCount) {
+    time += FRAME_PERIOD;
+    estimator.updateWithTime(time, Rotation2d.kZero, modulePositions);
+
+    var estimate = new VisionPoseEstimate("test", visionPose, time, kMultiTagStdDevs, tagCount, 2, 0);
+    var stdDevs = gate.check(estimate, estimator.sampleAt(time).orElse(null));
+    if (stdDevs == null) return false;
+    estimator.addVisionMeasurement(visionPose, time, stdDevs);
+    return true;
+  }
+
+
+  /** Feeds the multi-tag stream until the pose is within a cm of it. */
+  private void converge() {
+    for (int i = 0; i < 200 && error() > 0.01; i++) {
+      feed(VISION_POSE, 2);
+    }
+    assertTrue(gate.isConverged());
+  }
+
+
+  private double error() {
+    return estimator.getEstimatedPosition().getTranslation().getDistance(VISION_POSE.getTranslation());
+  }
+
+
+  @Test
+  void farOffMultiTagStreamConverges() {
+    for (int i = 0; i < 100 && error() > 0.1; i++) {
+      assertTrue(feed(VISION_POSE, 2), "multi-tag estimate " + i + " was rejected at " + error() + " m off");
+    }
+    assertTrue(error() <= 0.1, "pose is still " + error() + " m off");
+    assertTrue(gate.isConverged());
+
+    // The stream keeps being accepted once the pose agrees with it
+    for (int i = 0; i < 50; i++) {
+      assertTrue(feed(VISION_POSE, 2));
+    }
+    assertTrue(error() < 0.01, "pose is still " + error() + " m off");
+  }
+
+
+  @Test
+  void outlierIsRejectedOnceConverged() {
+    converge();
+
+    assertFalse(feed(new Pose2d(6, 6, Rotation2d.kZero), 2));
+    assertTrue(feed(VISION_POSE, 2));
+  }
+
+
+  @Test
+  void resetRestartsConvergence() {
+    converge();
+    estimator.resetPosition(Rotation2d.kZero, modulePositions, Pose2d.kZero);
+    gate.reset();
+    assertFalse(gate.isConverged());
+
+    assertTrue(feed(VISION_POSE, 2));
+  }
+}
@@ -0,0 +1,176 @@
+// Copyright (c) FIRST and other WPILib contributors.
+// Open Source Software; you can modify and/or share it under the terms of
+// the WPILib BSD license file in the root directory of this project.
+
+package frc.robot.utils;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+
+/**
+ * Tests the Limelight HTTP requests of {@link LimelightHelpers} against a local stand-in for the Limelight's web
+ * server.
+ */
+class LimelightHelpersHTTPTest {
+  private HttpServer server;
+  private ExecutorService serverExecutor;
+
+  // Behavior of the stand-in server, changed per test
+  private final AtomicInteger requests = new AtomicInteger();
+  private final CountDownLatch release = new CountDownLatch(1);
+  private volatile int responseCode = 200;
+  private volatile boolean blockUntilReleased = false;
+
+
+  @BeforeEach
+  void startServer() throws IOException {
+    server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+    server.createContext("/capturesnapshot", this::handle);
+    serverExecutor = Executors.newCachedThreadPool();
+    server.setExecutor(serverExecutor);
+    server.start();
+
+    LimelightHelpers.httpHostOverride = "127.0.0.1:" + server.getAddress().getPort();
+    LimelightHelpers.setHTTPTimeouts(500, 2000);
+  }
+
+
+  @AfterEach
+  void stopServer() {
+    release.countDown();
+    server.stop(0);
+    serverExecutor.shutdownNow();
+    LimelightHelpers.httpHostOverride = null;
+    LimelightHelpers.setHTTPTimeouts(500, 2000);
+  }
+
+
+  private void handle(HttpExchange exchange) throws IOException {
+    requests.incrementAndGet();
+    try {
+      if (blockUntilReleased) release.await(10, TimeUnit.SECONDS);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+    exchange.sendResponseHeaders(responseCode, -1);
+    exchange.close();
+  }
+
+
+  private void awaitRequests(int count) throws InterruptedException {
+    long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+    while (requests.get() < count) {
+      assertTrue(System.nanoTime() < deadline, "server did not receive " + count + " requests");
+      Thread.sleep(5);
+    }
+  }
+
+
+  @Test
+  void snapshotSucceeds() throws Exception {
+    assertTrue(LimelightHelpers.takeSnapshot("limelight", "ok").get(5, TimeUnit.SECONDS));
+    assertEquals(1, requests.get());
+  }
+
+
+  @Test
+  void readTimeoutFailsTheRequest() throws Exception {
+    blockUntilReleased = true;
+    LimelightHelpers.setHTTPTimeouts(500, 200);
+    long failedBefore = LimelightHelpers.getHTTPRequestsFailed();
+
+    long start = System.nanoTime();
+    assertFalse(LimelightHelpers.takeSnapshot("limelight", "timeout").get(5, TimeUnit.SECONDS));
+    double elapsedSeconds = (System.nanoTime() - start) / 1e9;
+
+    assertTrue(elapsedSeconds < 2, "request should give up after the read timeout, took " + elapsedSeconds + " s");
+    assertEquals(failedBefore + 1, LimelightHelpers.getHTTPRequestsFailed());
+  }
+
+
+  @Test
+  void concurrentIdenticalSnapshotsAreCoalesced() throws Exception {
+    blockUntilReleased = true;
+
+    CompletableFuture<Boolean> first = LimelightHelpers.takeSnapshot("limelight", "same");
+    CompletableFuture<Boolean> second = LimelightHelpers.takeSnapshot("limelight", "same");
+    CompletableFuture<Boolean> other = LimelightHelpers.takeSnapshot("limelight", "other");
+    assertSame(first, second);
+    assertNotSame(first, other);
+
+    release.countDown();
+    assertTrue(first.get(5, TimeUnit.SECONDS));
+    assertTrue(other.get(5, TimeUnit.SECONDS));
+    assertEquals(2, requests.get());
+
+    // Once completed, the same snapshot can be taken again
+    CompletableFuture<Boolean> again = LimelightHelpers.takeSnapshot("limelight", "same");
+    assertNotSame(first, again);
+    assertTrue(again.get(5, TimeUnit.SECONDS));
+  }
+
+
+  @Test
+  void requestsBeyondTheQueueAreRejected() throws Exception {
+    blockUntilReleased = true;
+    long failedBefore = LimelightHelpers.getHTTPRequestsFailed();
+
+    // Occupy every worker thread with a request blocked on the server, then fill the queue behind them
+    List<CompletableFuture<Boolean>> accepted = new ArrayList<>();
+    for (int i = 0; i < LimelightHelpers.HTTP_THREADS; i++) {
+      accepted.add(LimelightHelpers.takeSnapshot("limelight", "running" + i));
+    }
+    awaitRequests(LimelightHelpers.HTTP_THREADS);
+    for (int i = 0; i < LimelightHelpers.HTTP_QUEUE_CAPACITY; i++) {
+      accepted.add(LimelightHelpers.takeSnapshot("limelight", "queued" + i));
+    }
+
+    CompletableFuture<Boolean> rejected = LimelightHelpers.takeSnapshot("limelight", "rejected");
+    assertTrue(rejected.isDone(), "request beyond the queue should fail immediately");
+    assertFalse(rejected.get());
+    assertEquals(failedBefore + 1, LimelightHelpers.getHTTPRequestsFailed());
+
+    release.countDown();
+    for (CompletableFuture<Boolean> future : accepted) {
+      assertTrue(future.get(5, TimeUnit.SECONDS));
+    }
+    assertEquals(failedBefore + 1, LimelightHelpers.getHTTPRequestsFailed());
+  }
+
+
+  @Test
+  void countersTrackInFlightAndFailedRequests() throws Exception {
+    blockUntilReleased = true;
+    responseCode = 500;
+    int inFlightBefore = LimelightHelpers.getHTTPRequestsInFlight();
+    long failedBefore = LimelightHelpers.getHTTPRequestsFailed();
+
+    CompletableFuture<Boolean> a = LimelightHelpers.takeSnapshot("limelight", "a");
+    CompletableFuture<Boolean> b = LimelightHelpers.takeSnapshot("limelight", "b");
+    assertEquals(inFlightBefore + 2, LimelightHelpers.getHTTPRequestsInFlight());
+
+    release.countDown();
+    assertFalse(a.get(5, TimeUnit.SECONDS));
+    assertFalse(b.get(5, TimeUnit.SECONDS));
+    assertEquals(inFlightBefore, LimelightHelpers.getHTTPRequestsInFlight());
+    assertEquals(failedBefore + 2, LimelightHelpers.getHTTPRequestsFailed());
+  }
+}